@@ -0,0 +1,32 @@
+package com.milesight.beaveriot.integration.msc.benchmark;
+
+import lombok.*;
+
+import java.lang.reflect.Field;
+
+/**
+ * Wires stubbed providers into the integration services, which only expose autowired fields.
+ */
+public class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    @SneakyThrows
+    public static void inject(Object target, String fieldName, Object value) {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            }
+        }
+        throw new IllegalArgumentException("Field not found: " + fieldName);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.milesight.beaveriot.integration.msc.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milesight.beaveriot.context.integration.model.Entity;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.integration.msc.util.MscTslUtils;
+import com.milesight.cloud.sdk.client.model.ThingSpec;
+import lombok.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThingSpec to entities conversion and the conversions between TSL json and exchange payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MscTslUtilsBenchmark {
+
+    private static final String INTEGRATION_ID = "msc-integration";
+
+    private static final String DEVICE_KEY = "msc-integration.device.6723B2030002";
+
+    @Param({"10", "100", "500"})
+    private int propertyCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ThingSpec thingSpec;
+
+    private JsonNode propertiesJson;
+
+    private Map<String, Object> exchangePayload;
+
+    @Setup
+    public void setup() {
+        thingSpec = ThingSpecFixtures.thingSpec(propertyCount);
+        propertiesJson = ThingSpecFixtures.propertiesPayload(objectMapper, thingSpec);
+        val payload = MscTslUtils.convertJsonNodeToExchangePayload(DEVICE_KEY, propertiesJson);
+        exchangePayload = payload == null ? Map.of() : Map.copyOf(payload);
+    }
+
+    @Benchmark
+    public List<Entity> thingSpecificationToEntities() {
+        return MscTslUtils.thingSpecificationToEntities(INTEGRATION_ID, DEVICE_KEY, thingSpec);
+    }
+
+    @Benchmark
+    public ExchangePayload convertJsonNodeToExchangePayload() {
+        return MscTslUtils.convertJsonNodeToExchangePayload(DEVICE_KEY, propertiesJson);
+    }
+
+    @Benchmark
+    public Map<String, JsonNode> convertExchangePayloadMapToGroupedJsonNode() {
+        return MscTslUtils.convertExchangePayloadMapToGroupedJsonNode(objectMapper, DEVICE_KEY, exchangePayload);
+    }
+
+}
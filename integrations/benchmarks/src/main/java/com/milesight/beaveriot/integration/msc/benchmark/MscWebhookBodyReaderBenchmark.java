@@ -0,0 +1,108 @@
+package com.milesight.beaveriot.integration.msc.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.integration.msc.model.WebhookEvent;
+import com.milesight.beaveriot.integration.msc.util.MscTslUtils;
+import com.milesight.beaveriot.integration.msc.util.MscWebhookBodyReader;
+import lombok.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of webhook bodies into exchange payloads, the score is in events per second.
+ * <p>
+ * The webhook should sustain 10k events/s on one core, decoding is expected to stay well above that
+ * so most of the budget is left to saving the data.
+ * Every tenth event has an ignored event type, like the other notifications MSC sends to the same webhook.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MscWebhookBodyReaderBenchmark {
+
+    private static final int EVENTS_PER_BODY = 100;
+
+    private static final String DEVICE_KEY = "msc-integration.device.6723B2030002";
+
+    @Param({"10", "50"})
+    private int propertyCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        val propertiesPayload = ThingSpecFixtures.propertiesPayload(objectMapper, ThingSpecFixtures.thingSpec(propertyCount));
+        val events = objectMapper.createArrayNode();
+        for (int i = 0; i < EVENTS_PER_BODY; i++) {
+            val event = events.addObject()
+                    .put("eventId", Integer.toString(i))
+                    .put("eventCreatedTime", 1700000000L + i)
+                    .put("eventVersion", "1.0");
+            if (i % 10 == 9) {
+                event.put("eventType", "device_status");
+                event.putObject("data").put("sn", "6723B2030002").put("status", "ONLINE");
+                continue;
+            }
+            event.put("eventType", "device_data");
+            val data = event.putObject("data");
+            data.putObject("deviceProfile")
+                    .put("deviceId", 1000L + i)
+                    .put("sn", "6723B2030002")
+                    .put("name", "Device " + i)
+                    .put("model", "EM300-TH");
+            data.put("type", "PROPERTY");
+            data.set("payload", propertiesPayload);
+        }
+        body = objectMapper.writeValueAsBytes(events);
+    }
+
+    /**
+     * Single pass, straight from the body to flattened values.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_BODY)
+    public void streaming(Blackhole blackhole) throws IOException {
+        for (WebhookEvent event : MscWebhookBodyReader.read(body)) {
+            if (event.deviceData() != null) {
+                blackhole.consume(MscTslUtils.convertWebhookDeviceDataToExchangePayload(DEVICE_KEY, event.deviceData()));
+            }
+        }
+    }
+
+    /**
+     * The json tree path it replaces: bind the body, then walk the tree of each payload.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_BODY)
+    public void jsonTree(Blackhole blackhole) throws IOException {
+        for (JsonNode event : objectMapper.readTree(body)) {
+            if (!"device_data".equals(event.path("eventType").asText())) {
+                continue;
+            }
+            ExchangePayload payload = MscTslUtils.convertJsonNodeToExchangePayload(DEVICE_KEY, event.path("data").get("payload"));
+            blackhole.consume(payload);
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.milesight.beaveriot.integration.msc.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.milesight.beaveriot.context.api.DeviceServiceProvider;
+import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
+import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
+import com.milesight.beaveriot.context.integration.model.Device;
+import com.milesight.beaveriot.eventbus.api.Event;
+import com.milesight.beaveriot.integration.msc.entity.MscConnectionPropertiesEntities;
+import com.milesight.beaveriot.integration.msc.service.IMscClientProvider;
+import com.milesight.beaveriot.integration.msc.service.MscDataSyncService;
+import com.milesight.beaveriot.integration.msc.service.MscDeviceSyncStates;
+import com.milesight.beaveriot.integration.msc.service.MscHistoryBackfillService;
+import com.milesight.beaveriot.integration.msc.service.MscIntegrationStatusManager;
+import com.milesight.beaveriot.integration.msc.service.MscMetrics;
+import com.milesight.beaveriot.integration.msc.service.MscWebhookService;
+import com.milesight.beaveriot.integration.msc.service.MscWebhookSpoolService;
+import com.milesight.msc.sdk.MscClient;
+import com.milesight.msc.sdk.utils.HMacUtils;
+import com.milesight.msc.sdk.utils.TimeUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Webhook signature validation and the whole webhook ingestion path, with every platform provider stubbed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MscWebhookServiceBenchmark {
+
+    private static final String SECRET_KEY = "benchmark-secret-key";
+
+    private static final String DEVICE_SN = "6723B2030002";
+
+    private static final String DEVICE_KEY = "msc-integration.device." + DEVICE_SN;
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MscWebhookService webhookService;
+
+    private List<ObjectNode> webhookEvents;
+
+    private String requestTimestamp;
+
+    private String requestNonce;
+
+    private String signature;
+
+    private long eventSequence;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        val mscClient = mock(MscClient.class);
+        when(mscClient.getObjectMapper()).thenReturn(objectMapper);
+        val mscClientProvider = mock(IMscClientProvider.class);
+        when(mscClientProvider.getMscClient()).thenReturn(mscClient);
+
+        val device = mock(Device.class);
+        when(device.getKey()).thenReturn(DEVICE_KEY);
+        when(device.getIdentifier()).thenReturn(DEVICE_SN);
+        val deviceServiceProvider = mock(DeviceServiceProvider.class);
+        when(deviceServiceProvider.findByIdentifier(anyString(), anyString())).thenReturn(device);
+
+        val entityValueServiceProvider = mock(EntityValueServiceProvider.class);
+        val exchangeFlowExecutor = mock(ExchangeFlowExecutor.class);
+
+        val mscMetrics = new MscMetrics(new SimpleMeterRegistry());
+        BenchmarkSupport.inject(mscMetrics, "exchangeFlowExecutor", exchangeFlowExecutor);
+
+        val dataSyncService = new MscDataSyncService();
+        BenchmarkSupport.inject(dataSyncService, "mscClientProvider", mscClientProvider);
+        BenchmarkSupport.inject(dataSyncService, "deviceServiceProvider", deviceServiceProvider);
+        BenchmarkSupport.inject(dataSyncService, "entityValueServiceProvider", entityValueServiceProvider);
+        BenchmarkSupport.inject(dataSyncService, "exchangeFlowExecutor", exchangeFlowExecutor);
+        BenchmarkSupport.inject(dataSyncService, "mscMetrics", mscMetrics);
+
+        webhookService = new MscWebhookService();
+        BenchmarkSupport.inject(webhookService, "deviceServiceProvider", deviceServiceProvider);
+        BenchmarkSupport.inject(webhookService, "entityValueServiceProvider", entityValueServiceProvider);
+        BenchmarkSupport.inject(webhookService, "dataSyncService", dataSyncService);
+        BenchmarkSupport.inject(webhookService, "mscMetrics", mscMetrics);
+        val deviceSyncStates = new MscDeviceSyncStates();
+        val historyBackfillService = new MscHistoryBackfillService();
+        BenchmarkSupport.inject(historyBackfillService, "dataSyncService", dataSyncService);
+        BenchmarkSupport.inject(historyBackfillService, "mscDeviceSyncStates", deviceSyncStates);
+        BenchmarkSupport.inject(webhookService, "mscDeviceSyncStates", deviceSyncStates);
+        BenchmarkSupport.inject(webhookService, "mscHistoryBackfillService", historyBackfillService);
+        // not started, requests are handled inline so the benchmark measures the handling itself
+        BenchmarkSupport.inject(webhookService, "mscWebhookSpoolService", new MscWebhookSpoolService());
+        val statusManager = new MscIntegrationStatusManager();
+        BenchmarkSupport.inject(statusManager, "exchangeFlowExecutor", exchangeFlowExecutor);
+        BenchmarkSupport.inject(webhookService, "mscIntegrationStatusManager", statusManager);
+
+        Event<MscConnectionPropertiesEntities.Webhook> event = mock(Event.class);
+        when(event.getPayload()).thenReturn(MscConnectionPropertiesEntities.Webhook.builder()
+                .enabled(true)
+                .secretKey(SECRET_KEY)
+                .build());
+        webhookService.onWebhookPropertiesUpdate(event);
+
+        val propertiesPayload = ThingSpecFixtures.propertiesPayload(objectMapper, ThingSpecFixtures.thingSpec(20));
+        webhookEvents = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            val data = objectMapper.createObjectNode();
+            data.putObject("deviceProfile")
+                    .put("deviceId", 1000L + i)
+                    .put("sn", DEVICE_SN)
+                    .put("name", "Device " + i)
+                    .put("model", "EM300-TH");
+            data.put("type", "PROPERTY");
+            data.set("payload", propertiesPayload);
+            val webhookEvent = objectMapper.createObjectNode()
+                    .put("eventId", UUID.randomUUID().toString())
+                    .put("eventCreatedTime", TimeUtils.currentTimeSeconds())
+                    .put("eventVersion", "1.0")
+                    .put("eventType", "device_data");
+            webhookEvent.set("data", data);
+            webhookEvents.add(webhookEvent);
+        }
+    }
+
+    /**
+     * Requests older than one minute are rejected, keep the timestamp fresh.
+     */
+    @Setup(Level.Iteration)
+    public void sign() {
+        requestTimestamp = String.valueOf(TimeUtils.currentTimeSeconds());
+        requestNonce = UUID.randomUUID().toString();
+        signature = HMacUtils.digestHex(HMacUtils.getMac(SECRET_KEY), requestTimestamp + requestNonce);
+    }
+
+    @Benchmark
+    public boolean isSignatureValid() {
+        return webhookService.isSignatureValid(signature, requestTimestamp, requestNonce);
+    }
+
+    @Benchmark
+    public void handleWebhookData() throws JsonProcessingException {
+        // fresh event ids, otherwise every payload after the first invocation is dropped as a duplicate
+        for (val webhookEvent : webhookEvents) {
+            webhookEvent.put("eventId", Long.toString(eventSequence++));
+        }
+        // serializing the body is measured as well, it is in the same order as the http message conversion it replaces
+        val body = objectMapper.writeValueAsBytes(webhookEvents);
+        webhookService.handleWebhookData(signature, "webhook-uuid", requestTimestamp, requestNonce, body);
+    }
+
+}
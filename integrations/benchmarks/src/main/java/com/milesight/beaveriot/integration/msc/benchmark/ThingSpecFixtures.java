@@ -0,0 +1,108 @@
+package com.milesight.beaveriot.integration.msc.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.milesight.cloud.sdk.client.model.ThingSpec;
+import com.milesight.cloud.sdk.client.model.TslDataSpec;
+import com.milesight.cloud.sdk.client.model.TslDataValidatorSpec;
+import com.milesight.cloud.sdk.client.model.TslKeyValuePair;
+import com.milesight.cloud.sdk.client.model.TslPropertySpec;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic thing specifications and matching property payloads.
+ * <p>
+ * Every fifth root property is a STRUCT with two leaves and a nested STRUCT, the others are plain values of
+ * mixed data types, which is close to the specs of real Milesight devices.
+ */
+public class ThingSpecFixtures {
+
+    private ThingSpecFixtures() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static ThingSpec thingSpec(int propertyCount) {
+        val properties = new ArrayList<TslPropertySpec>(propertyCount);
+        int index = 0;
+        while (properties.size() < propertyCount) {
+            val id = "p" + index;
+            if (index % 5 == 0 && propertyCount - properties.size() >= 5) {
+                properties.add(property(id, null, TslDataSpec.DataTypeEnum.STRUCT));
+                properties.add(property(id + ".a", id, TslDataSpec.DataTypeEnum.INT));
+                properties.add(property(id + ".b", id, TslDataSpec.DataTypeEnum.STRING));
+                properties.add(property(id + ".c", id, TslDataSpec.DataTypeEnum.STRUCT));
+                properties.add(property(id + ".c.d", id + ".c", TslDataSpec.DataTypeEnum.DOUBLE));
+            } else {
+                properties.add(property(id, null, leafType(index)));
+            }
+            index++;
+        }
+        return new ThingSpec().properties(properties);
+    }
+
+    /**
+     * Build a property payload which covers every leaf of the spec.
+     */
+    public static ObjectNode propertiesPayload(ObjectMapper objectMapper, ThingSpec thingSpec) {
+        val root = objectMapper.createObjectNode();
+        thingSpec.getProperties().forEach(spec -> {
+            val paths = spec.getId().split("\\.");
+            var parent = root;
+            for (int i = 0; i < paths.length - 1; i++) {
+                parent = parent.has(paths[i]) ? (ObjectNode) parent.get(paths[i]) : parent.putObject(paths[i]);
+            }
+            val field = paths[paths.length - 1];
+            switch (spec.getDataSpec().getDataType()) {
+                case STRUCT -> {
+                    if (!parent.has(field)) {
+                        parent.putObject(field);
+                    }
+                }
+                case INT, LONG -> parent.put(field, field.length() * 7L);
+                case DOUBLE, FLOAT -> parent.put(field, 21.5d);
+                case BOOL -> parent.put(field, true);
+                default -> parent.put(field, "value-" + field);
+            }
+        });
+        return root;
+    }
+
+    private static TslDataSpec.DataTypeEnum leafType(int index) {
+        return switch (index % 5) {
+            case 1 -> TslDataSpec.DataTypeEnum.INT;
+            case 2 -> TslDataSpec.DataTypeEnum.DOUBLE;
+            case 3 -> TslDataSpec.DataTypeEnum.ENUM;
+            default -> TslDataSpec.DataTypeEnum.BOOL;
+        };
+    }
+
+    private static TslPropertySpec property(String id, String parentId, TslDataSpec.DataTypeEnum dataType) {
+        val dataSpec = new TslDataSpec()
+                .parentId(parentId)
+                .dataType(dataType);
+        switch (dataType) {
+            case INT, DOUBLE -> dataSpec
+                    .unitName("°C")
+                    .validator(new TslDataValidatorSpec()
+                            .min(BigDecimal.valueOf(-40))
+                            .max(BigDecimal.valueOf(85)));
+            case ENUM -> dataSpec
+                    .mappings(List.of(
+                            new TslKeyValuePair().key("0").value("off"),
+                            new TslKeyValuePair().key("1").value("on")));
+            default -> {
+                // no extra attributes
+            }
+        }
+        return new TslPropertySpec()
+                .id(id)
+                .name("Property " + id)
+                .accessMode(TslPropertySpec.AccessModeEnum.RW)
+                .dataSpec(dataSpec);
+    }
+
+}
@@ -2,19 +2,50 @@ package com.milesight.beaveriot.integration.msc;
 
 import com.milesight.beaveriot.context.integration.bootstrap.IntegrationBootstrap;
 import com.milesight.beaveriot.context.integration.model.Integration;
+import com.milesight.beaveriot.integration.msc.model.IntegrationStatus;
 import com.milesight.beaveriot.integration.msc.service.MscConnectionService;
 import com.milesight.beaveriot.integration.msc.service.MscDataSyncService;
+import com.milesight.beaveriot.integration.msc.service.MscDeviceService;
+import com.milesight.beaveriot.integration.msc.service.MscDeviceSyncStates;
+import com.milesight.beaveriot.integration.msc.service.MscIntegrationStatusManager;
+import com.milesight.beaveriot.integration.msc.service.MscMetrics;
 import com.milesight.beaveriot.integration.msc.service.MscWebhookService;
+import com.milesight.beaveriot.integration.msc.service.MscWebhookSpoolService;
+import lombok.*;
 import lombok.extern.slf4j.*;
 import org.apache.camel.CamelContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @Slf4j
 @Component
 public class MscIntegrationBootstrap implements IntegrationBootstrap {
 
+    private static final long CONNECTION_DEADLINE_SECONDS = 30;
+
+    private static final long STOP_WAIT_SECONDS = 5;
+
+    private static final ThreadPoolExecutor startupExecutor = new ThreadPoolExecutor(3, 3,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+        val thread = new Thread(r, "msc-startup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        startupExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private volatile CompletableFuture<Void> startup;
+
     @Autowired
     private MscConnectionService mscConnectionService;
 
@@ -24,25 +55,93 @@ public class MscIntegrationBootstrap implements IntegrationBootstrap {
     @Autowired
     private MscWebhookService mscWebhookService;
 
+    @Autowired
+    private MscMetrics mscMetrics;
+
+    @Autowired
+    private MscDeviceSyncStates mscDeviceSyncStates;
+
+    @Autowired
+    private MscWebhookSpoolService mscWebhookSpoolService;
+
+    @Autowired
+    private MscIntegrationStatusManager mscIntegrationStatusManager;
+
+    @Autowired
+    private MscDeviceService mscDeviceService;
+
 
     @Override
     public void onPrepared(Integration integrationConfig) {
 
     }
 
+    /**
+     * Start the integration without blocking the startup of the application.
+     * <p>
+     * The local states are loaded first, then the connection test, data sync settings and webhook run concurrently.
+     * The openapi status is STARTING until the connection is verified,
+     * and the scheduled sync starts after that or after the connection deadline.
+     */
     @Override
     public void onStarted(Integration integrationConfig) {
         log.info("MSC integration starting");
-        mscConnectionService.init();
-        mscDataFetchingService.init();
-        mscWebhookService.init();
-        log.info("MSC integration started");
+        val startNanos = System.nanoTime();
+        mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.STARTING);
+        mscMetrics.start();
+        mscDeviceService.start();
+
+        val localStates = CompletableFuture.runAsync(() -> {
+            mscDeviceSyncStates.load();
+            mscDeviceSyncStates.start();
+        }, startupExecutor);
+        // the first sync is triggered once the connection is ready
+        val connection = localStates.thenRunAsync(mscConnectionService::init, startupExecutor)
+                .orTimeout(CONNECTION_DEADLINE_SECONDS, TimeUnit.SECONDS)
+                .exceptionally(e -> {
+                    if (e instanceof TimeoutException) {
+                        log.warn("MSC connection not verified within {} seconds, continue in background", CONNECTION_DEADLINE_SECONDS);
+                    } else {
+                        log.error("Init MSC connection failed", e);
+                    }
+                    return null;
+                });
+        val dataSync = connection.thenRunAsync(mscDataFetchingService::init, startupExecutor);
+        val webhook = localStates.thenRunAsync(() -> {
+            mscWebhookService.init();
+            // replay the webhook requests left by the last run
+            mscWebhookSpoolService.start();
+        }, startupExecutor);
+        startup = CompletableFuture.allOf(dataSync, webhook)
+                .whenComplete((ignored, e) -> {
+                    val durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    mscMetrics.startupFinished(durationMillis);
+                    if (e != null) {
+                        log.error("MSC integration started with error in {} ms", durationMillis, e);
+                    } else {
+                        log.info("MSC integration started in {} ms", durationMillis);
+                    }
+                });
     }
 
     @Override
     public void onDestroy(Integration integrationConfig) {
         log.info("MSC integration stopping");
+        val currentStartup = startup;
+        if (currentStartup != null && !currentStartup.isDone()) {
+            try {
+                currentStartup.get(STOP_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("MSC integration stopping before started: {}", e.getMessage());
+            }
+        }
         mscDataFetchingService.stop();
+        mscWebhookSpoolService.stop();
+        mscDeviceService.stop();
+        mscMetrics.stop();
+        mscDeviceSyncStates.stop();
         log.info("MSC integration stopped");
     }
 
@@ -0,0 +1,77 @@
+package com.milesight.beaveriot.integration.msc.cluster;
+
+import lombok.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable consistent hash ring with virtual nodes.
+ * <p>
+ * When a node joins or leaves, only the keys of the ring segments it owns move to other nodes.
+ */
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final long[] points;
+
+    private final String[] owners;
+
+    public ConsistentHashRing(Collection<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        val sortedNodes = nodes.stream().distinct().sorted().toList();
+        val entries = new long[sortedNodes.size() * virtualNodes][];
+        var i = 0;
+        for (int n = 0; n < sortedNodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[i++] = new long[]{hash(sortedNodes.get(n) + "#" + v), n};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        points = new long[entries.length];
+        owners = new String[entries.length];
+        for (int p = 0; p < entries.length; p++) {
+            points[p] = entries[p][0];
+            owners[p] = sortedNodes.get((int) entries[p][1]);
+        }
+    }
+
+    public boolean isEmpty() {
+        return points.length == 0;
+    }
+
+    /**
+     * @return the node owning the key, null if the ring is empty
+     */
+    public String getOwner(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        var i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /**
+     * 64-bit FNV-1a with a final avalanche step, stable across JVMs unlike {@link String#hashCode()}.
+     */
+    static long hash(String key) {
+        var h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.milesight.beaveriot.integration.msc.cluster;
+
+import lombok.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Coordinator whose members live in the same JVM.
+ * <p>
+ * A standalone node is the only member of its own group.
+ * Several coordinators sharing one {@link Group} simulate a cluster in tests.
+ */
+public class InMemorySyncClusterCoordinator implements SyncClusterCoordinator {
+
+    @Getter
+    private final String localNodeId;
+
+    private final Group group;
+
+    public InMemorySyncClusterCoordinator() {
+        this(new Group(), UUID.randomUUID().toString());
+    }
+
+    public InMemorySyncClusterCoordinator(Group group, String localNodeId) {
+        this.group = group;
+        this.localNodeId = localNodeId;
+        group.join(localNodeId);
+    }
+
+    @Override
+    public Collection<String> getMembers() {
+        return group.getMembers();
+    }
+
+    @Override
+    public void addMembershipListener(Runnable listener) {
+        group.listeners.add(listener);
+    }
+
+    public void leave() {
+        group.leave(localNodeId);
+    }
+
+    public static class Group {
+
+        private final Set<String> members = new ConcurrentSkipListSet<>();
+
+        private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+        public Collection<String> getMembers() {
+            return List.copyOf(members);
+        }
+
+        public void join(String nodeId) {
+            if (members.add(nodeId)) {
+                listeners.forEach(Runnable::run);
+            }
+        }
+
+        public void leave(String nodeId) {
+            if (members.remove(nodeId)) {
+                listeners.forEach(Runnable::run);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.milesight.beaveriot.integration.msc.cluster;
+
+import java.util.Collection;
+
+/**
+ * Membership of the nodes which share the MSC data sync.
+ * <p>
+ * Provide a bean of this type to enable partitioned sync across nodes,
+ * otherwise the node runs as the only member and syncs all devices.
+ */
+public interface SyncClusterCoordinator {
+
+    String getLocalNodeId();
+
+    /**
+     * @return ids of the live nodes, including the local node
+     */
+    Collection<String> getMembers();
+
+    /**
+     * @param listener called after the members changed
+     */
+    void addMembershipListener(Runnable listener);
+
+}
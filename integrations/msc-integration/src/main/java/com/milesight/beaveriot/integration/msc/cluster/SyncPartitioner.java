@@ -0,0 +1,69 @@
+package com.milesight.beaveriot.integration.msc.cluster;
+
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Assigns devices to the nodes of the sync cluster by consistent hashing of the device identifier.
+ */
+@Slf4j
+@Component
+public class SyncPartitioner {
+
+    private final SyncClusterCoordinator coordinator;
+
+    private final List<Runnable> rebalanceListeners = new CopyOnWriteArrayList<>();
+
+    private volatile ConsistentHashRing ring;
+
+    @Autowired
+    public SyncPartitioner(ObjectProvider<SyncClusterCoordinator> coordinatorProvider) {
+        this(coordinatorProvider.getIfAvailable(InMemorySyncClusterCoordinator::new));
+    }
+
+    public SyncPartitioner(SyncClusterCoordinator coordinator) {
+        this.coordinator = coordinator;
+        this.ring = new ConsistentHashRing(coordinator.getMembers());
+        coordinator.addMembershipListener(this::rebalance);
+    }
+
+    /**
+     * @return true if the device is synced by this node
+     */
+    public boolean isLocal(String identifier) {
+        val currentRing = ring;
+        // not a member yet, e.g. while joining, then nothing is owned
+        return coordinator.getLocalNodeId().equals(currentRing.getOwner(identifier));
+    }
+
+    public int getMemberCount() {
+        return coordinator.getMembers().size();
+    }
+
+    /**
+     * @param listener called after the ring is rebuilt for new members
+     */
+    public void addRebalanceListener(Runnable listener) {
+        rebalanceListeners.add(listener);
+    }
+
+    private void rebalance() {
+        val members = coordinator.getMembers();
+        ring = new ConsistentHashRing(members);
+        log.info("Sync cluster members changed, {} members: {}", members.size(), members);
+        rebalanceListeners.forEach(listener -> {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("Rebalance listener failed", e);
+            }
+        });
+    }
+
+}
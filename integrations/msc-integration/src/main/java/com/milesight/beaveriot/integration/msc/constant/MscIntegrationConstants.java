@@ -1,5 +1,7 @@
 package com.milesight.beaveriot.integration.msc.constant;
 
+import java.nio.file.Path;
+
 public interface MscIntegrationConstants {
 
     String INTEGRATION_IDENTIFIER = "msc-integration";
@@ -30,4 +32,22 @@ public interface MscIntegrationConstants {
 
     }
 
+    interface LocalStorage {
+
+        String DATA_DIRECTORY_PROPERTY = "msc-integration.data-dir";
+
+        String DEVICE_SYNC_STATES_FILE = "device-sync-states.bin";
+
+        String WEBHOOK_SPOOL_DIRECTORY = "webhook-spool";
+
+        /**
+         * Local files of the integration are stored beside the default H2 database, unless the system property is set
+         */
+        static Path getDataDirectory() {
+            return Path.of(System.getProperty(DATA_DIRECTORY_PROPERTY,
+                    Path.of(System.getProperty("user.home"), "beaver-iot", INTEGRATION_IDENTIFIER).toString()));
+        }
+
+    }
+
 }
@@ -1,6 +1,5 @@
 package com.milesight.beaveriot.integration.msc.controller;
 
-import com.milesight.beaveriot.integration.msc.model.WebhookPayload;
 import com.milesight.beaveriot.integration.msc.service.MscWebhookService;
 import lombok.extern.slf4j.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +9,6 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 /**
  *
  */
@@ -28,8 +25,8 @@ public class MscIntegrationPublicController {
                           @RequestHeader(name = "x-msc-webhook-uuid") String webhookUuid,
                           @RequestHeader(name = "x-msc-request-timestamp") String requestTimestamp,
                           @RequestHeader(name = "x-msc-request-nonce") String requestNonce,
-                          @RequestBody List<WebhookPayload> webhookPayloads) {
-        mscWebhookService.handleWebhookData(signature, webhookUuid, requestTimestamp, requestNonce, webhookPayloads);
+                          @RequestBody byte[] body) {
+        mscWebhookService.handleWebhookData(signature, webhookUuid, requestTimestamp, requestNonce, body);
         return "success";
     }
 
@@ -28,6 +28,7 @@ public class MscConnectionPropertiesEntities extends ExchangePayload {
     /**
      * The status of the connection.<br/>
      * Possible values:<br/>
+     * STARTING<br/>
      * READY<br/>
      * NOT_READY<br/>
      * ERROR<br/>
@@ -99,6 +100,21 @@ public class MscConnectionPropertiesEntities extends ExchangePayload {
         @Entity(attributes = {@Attribute(min = 30, max = 86400)})
         private Integer period;
 
+        /**
+         * Seconds a device must stay missing from MSC before the local device is removed
+         */
+        @Entity(attributes = {@Attribute(min = 0, max = 2592000)})
+        private Integer orphanGracePeriod;
+
+        /**
+         * Devices polled with their own periods, a JSON array of tiers, e.g.
+         * <pre>[{"name": "critical", "period": 30, "identifiers": ["6136A1234567", "24E124*"]}]</pre>
+         * An identifier ending with '*' matches the SN prefix, e.g. of a device model.
+         * The other devices are polled with the period above.
+         */
+        @Entity
+        private String pollingTiers;
+
     }
 
 }
@@ -0,0 +1,68 @@
+package com.milesight.beaveriot.integration.msc.entity;
+
+import com.milesight.beaveriot.base.utils.StringUtils;
+import com.milesight.beaveriot.context.integration.entity.annotation.Entities;
+import com.milesight.beaveriot.context.integration.entity.annotation.Entity;
+import com.milesight.beaveriot.context.integration.entity.annotation.IntegrationEntities;
+import com.milesight.beaveriot.context.integration.enums.AccessMod;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.integration.msc.constant.MscIntegrationConstants;
+import lombok.*;
+import lombok.experimental.*;
+
+/**
+ * Read-only result of the last device downlink, which may span many devices.
+ */
+@FieldNameConstants
+@EqualsAndHashCode(callSuper = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IntegrationEntities
+public class MscDownlinkEntities extends ExchangePayload {
+
+    public static String getKey(String propertyKey) {
+        return MscIntegrationConstants.INTEGRATION_IDENTIFIER + ".integration." + StringUtils.toSnakeCase(Fields.lastDownlink)
+                + "." + StringUtils.toSnakeCase(propertyKey);
+    }
+
+    @Entity(accessMod = AccessMod.R)
+    private LastDownlink lastDownlink;
+
+    @FieldNameConstants
+    @EqualsAndHashCode(callSuper = true)
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Entities
+    public static class LastDownlink extends ExchangePayload {
+
+        @Entity(accessMod = AccessMod.R)
+        private Long succeeded;
+
+        @Entity(accessMod = AccessMod.R)
+        private Long failed;
+
+        /**
+         * Failure reasons keyed by device key in json
+         */
+        @Entity(accessMod = AccessMod.R)
+        private String failedDevices;
+
+        /**
+         * Duration of the downlink in milliseconds
+         */
+        @Entity(accessMod = AccessMod.R)
+        private Long duration;
+
+        /**
+         * Finish time of the downlink in milliseconds
+         */
+        @Entity(accessMod = AccessMod.R)
+        private Long finishTime;
+
+    }
+
+}
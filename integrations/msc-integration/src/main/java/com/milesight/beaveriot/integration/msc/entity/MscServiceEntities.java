@@ -22,9 +22,15 @@ public class MscServiceEntities extends ExchangePayload {
     @Entity(type = EntityType.SERVICE)
     private SyncDevice syncDevice;
 
+    @Entity(type = EntityType.SERVICE)
+    private RefreshDevice refreshDevice;
+
     @Entity(type = EntityType.SERVICE)
     private DeleteDevice deleteDevice;
 
+    @Entity(type = EntityType.SERVICE)
+    private DumpSyncTraces dumpSyncTraces;
+
     @EqualsAndHashCode(callSuper = true)
     @Data
     @Builder
@@ -56,4 +62,32 @@ public class MscServiceEntities extends ExchangePayload {
 
     }
 
+    /**
+     * Refresh the details, thing specification and latest properties of a device without syncing the other devices
+     */
+    @EqualsAndHashCode(callSuper = true)
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Entities
+    public static class RefreshDevice extends ExchangePayload {
+
+        @Entity(attributes = {@Attribute(minLength = 12, maxLength = 16)})
+        private String sn;
+
+    }
+
+    /**
+     * Write the span trees of the recent sync runs into the sync_traces entity
+     */
+    @EqualsAndHashCode(callSuper = true)
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @Entities
+    public static class DumpSyncTraces extends ExchangePayload {
+
+    }
+
 }
@@ -0,0 +1,95 @@
+package com.milesight.beaveriot.integration.msc.entity;
+
+import com.milesight.beaveriot.base.utils.StringUtils;
+import com.milesight.beaveriot.context.integration.entity.annotation.Entities;
+import com.milesight.beaveriot.context.integration.entity.annotation.Entity;
+import com.milesight.beaveriot.context.integration.entity.annotation.IntegrationEntities;
+import com.milesight.beaveriot.context.integration.enums.AccessMod;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.integration.msc.constant.MscIntegrationConstants;
+import lombok.*;
+import lombok.experimental.*;
+
+/**
+ * Read-only summary of the integration metrics, so the sync health is visible without a monitoring stack.
+ */
+@FieldNameConstants
+@EqualsAndHashCode(callSuper = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IntegrationEntities
+public class MscSyncHealthEntities extends ExchangePayload {
+
+    public static String getKey(String propertyKey) {
+        return MscIntegrationConstants.INTEGRATION_IDENTIFIER + ".integration." + StringUtils.toSnakeCase(Fields.syncHealth)
+                + "." + StringUtils.toSnakeCase(propertyKey);
+    }
+
+    @Entity(accessMod = AccessMod.R)
+    private SyncHealth syncHealth;
+
+    @FieldNameConstants
+    @EqualsAndHashCode(callSuper = true)
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Entities
+    public static class SyncHealth extends ExchangePayload {
+
+        @Entity(accessMod = AccessMod.R)
+        private Long apiRequests;
+
+        @Entity(accessMod = AccessMod.R)
+        private Long apiErrors;
+
+        /**
+         * Mean latency of MSC OpenAPI requests in milliseconds
+         */
+        @Entity(accessMod = AccessMod.R)
+        private Double apiMeanLatency;
+
+        @Entity(accessMod = AccessMod.R)
+        private Long webhookReceived;
+
+        @Entity(accessMod = AccessMod.R)
+        private Long webhookAccepted;
+
+        @Entity(accessMod = AccessMod.R)
+        private Long webhookRejected;
+
+        @Entity(accessMod = AccessMod.R)
+        private Long webhookDeduplicated;
+
+        @Entity(accessMod = AccessMod.R)
+        private Long inFlightDeviceTasks;
+
+        /**
+         * Duration of the last sync run in milliseconds
+         */
+        @Entity(accessMod = AccessMod.R)
+        private Long lastSyncDuration;
+
+        /**
+         * Finish time of the last sync run in milliseconds
+         */
+        @Entity(accessMod = AccessMod.R)
+        private Long lastSyncTime;
+
+        /**
+         * Duration of the last integration startup in milliseconds, until the connection is verified or its deadline passed
+         */
+        @Entity(accessMod = AccessMod.R)
+        private Long startupDuration;
+
+        /**
+         * Span trees of the recent sync runs in json, updated by the dump_sync_traces service
+         */
+        @Entity(accessMod = AccessMod.R)
+        private String syncTraces;
+
+    }
+
+}
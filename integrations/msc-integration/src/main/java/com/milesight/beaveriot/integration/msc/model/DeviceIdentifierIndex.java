@@ -0,0 +1,65 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import lombok.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Sorted array of device identifiers with a seen flag per identifier.
+ * <p>
+ * Used to diff local devices against the devices listed from MSC without keeping any {@link com.milesight.beaveriot.context.integration.model.Device} object.
+ * Not thread-safe.
+ */
+public class DeviceIdentifierIndex {
+
+    private final String[] identifiers;
+
+    private final BitSet seen;
+
+    private DeviceIdentifierIndex(String[] identifiers) {
+        this.identifiers = identifiers;
+        this.seen = new BitSet(identifiers.length);
+    }
+
+    /**
+     * @param identifiers identifiers, null and duplicated values are dropped
+     */
+    public static DeviceIdentifierIndex of(String[] identifiers) {
+        val sorted = Arrays.stream(identifiers)
+                .filter(Objects::nonNull)
+                .sorted()
+                .distinct()
+                .toArray(String[]::new);
+        return new DeviceIdentifierIndex(sorted);
+    }
+
+    public int size() {
+        return identifiers.length;
+    }
+
+    public boolean contains(String identifier) {
+        return Arrays.binarySearch(identifiers, identifier) >= 0;
+    }
+
+    /**
+     * @return true if the identifier is in the index
+     */
+    public boolean markSeen(String identifier) {
+        val i = Arrays.binarySearch(identifiers, identifier);
+        if (i < 0) {
+            return false;
+        }
+        seen.set(i);
+        return true;
+    }
+
+    public void forEachUnseen(Consumer<String> consumer) {
+        for (int i = seen.nextClearBit(0); i < identifiers.length; i = seen.nextClearBit(i + 1)) {
+            consumer.accept(identifiers[i]);
+        }
+    }
+
+}
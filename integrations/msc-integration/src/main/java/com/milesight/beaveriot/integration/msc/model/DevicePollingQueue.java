@@ -0,0 +1,143 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import lombok.*;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Devices waiting to be polled, ordered by the time they are due.
+ * <p>
+ * A device is queued at most once, rescheduling replaces its entry. Expedited devices jump ahead of all scheduled ones.
+ * Replaced entries stay in the heap until they are polled and skipped, so every operation is O(log n).
+ */
+public class DevicePollingQueue {
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>();
+
+    private final HashMap<Long, Entry> deviceIdToEntry = new HashMap<>();
+
+    private long sequence = 0;
+
+    /**
+     * Queue the device unless it is already queued.
+     *
+     * @return true if the device is queued by this call
+     */
+    public synchronized boolean offer(long deviceId, String identifier, long dueAt) {
+        if (deviceIdToEntry.containsKey(deviceId)) {
+            return false;
+        }
+        put(new Entry(deviceId, identifier, dueAt, false, sequence++));
+        return true;
+    }
+
+    /**
+     * Queue the device at the given time, replacing its queued entry unless that one is expedited.
+     */
+    public synchronized void schedule(long deviceId, String identifier, long dueAt) {
+        val existing = deviceIdToEntry.get(deviceId);
+        if (existing != null && existing.expedited) {
+            return;
+        }
+        put(new Entry(deviceId, identifier, dueAt, false, sequence++));
+    }
+
+    /**
+     * Move the device ahead of all scheduled devices, it's due immediately.
+     */
+    public synchronized void expedite(long deviceId, String identifier) {
+        val existing = deviceIdToEntry.get(deviceId);
+        if (existing != null && existing.expedited) {
+            return;
+        }
+        put(new Entry(deviceId, identifier, 0, true, sequence++));
+    }
+
+    public synchronized void remove(long deviceId) {
+        deviceIdToEntry.remove(deviceId);
+    }
+
+    public synchronized void clear() {
+        heap.clear();
+        deviceIdToEntry.clear();
+    }
+
+    public synchronized int size() {
+        return deviceIdToEntry.size();
+    }
+
+    /**
+     * @return the first device which is due, or null if none
+     */
+    @Nullable
+    public synchronized Entry poll(long now) {
+        Entry head;
+        while ((head = heap.peek()) != null) {
+            if (deviceIdToEntry.get(head.deviceId) != head) {
+                // replaced or removed
+                heap.poll();
+                continue;
+            }
+            if (!head.expedited && head.dueAt > now) {
+                return null;
+            }
+            heap.poll();
+            deviceIdToEntry.remove(head.deviceId);
+            return head;
+        }
+        return null;
+    }
+
+    /**
+     * Block until a device is due.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized Entry take() throws InterruptedException {
+        while (true) {
+            val now = System.currentTimeMillis();
+            val entry = poll(now);
+            if (entry != null) {
+                return entry;
+            }
+            val head = heap.peek();
+            if (head == null) {
+                wait();
+            } else {
+                TimeUnit.MILLISECONDS.timedWait(this, head.dueAt - now);
+            }
+        }
+    }
+
+    private void put(Entry entry) {
+        deviceIdToEntry.put(entry.deviceId, entry);
+        heap.add(entry);
+        if (heap.peek() == entry) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @param dueAt     time (ms) the device is due
+     * @param expedited whether the device is requested by a user
+     */
+    public record Entry(long deviceId, String identifier, long dueAt, boolean expedited,
+                        long sequence) implements Comparable<Entry> {
+
+        @Override
+        public int compareTo(Entry other) {
+            if (expedited != other.expedited) {
+                return expedited ? -1 : 1;
+            }
+            if (dueAt != other.dueAt) {
+                return Long.compare(dueAt, other.dueAt);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+}
@@ -0,0 +1,408 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import lombok.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Sync state of each device keyed by the numeric MSC device id.
+ * <p>
+ * An open addressing hash table (linear probing, backward shift deletion) over parallel primitive arrays,
+ * so a lookup is O(1) without boxing and a device costs a few dozen bytes.
+ * The identifiers are indexed by a map next to the arrays, it holds the device id instead of the slot
+ * since the slots move on removal and resizing.
+ * All methods are synchronized, each of them is a short constant time operation.
+ */
+public class DeviceSyncStateTable {
+
+    public static final int FLAG_IN_FLIGHT = 1;
+
+    private static final int MAGIC = 0x4d534353;
+
+    private static final int VERSION = 1;
+
+    private static final long EMPTY = 0;
+
+    private long[] deviceIds;
+
+    private String[] identifiers;
+
+    private long[] lastSyncTimes;
+
+    private long[] lastWebhookReceivedTimes;
+
+    private long[] lastEventCreatedTimes;
+
+    private long[] meanEventIntervals;
+
+    private int[] eventIntervalSamples;
+
+    private long[] fingerprints;
+
+    private int[] flags;
+
+    private final HashMap<String, Long> identifierToDeviceId = new HashMap<>();
+
+    private int size;
+
+    public DeviceSyncStateTable() {
+        this(64);
+    }
+
+    public DeviceSyncStateTable(int expectedSize) {
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+    }
+
+    private void allocate(int capacity) {
+        deviceIds = new long[capacity];
+        identifiers = new String[capacity];
+        lastSyncTimes = new long[capacity];
+        lastWebhookReceivedTimes = new long[capacity];
+        lastEventCreatedTimes = new long[capacity];
+        meanEventIntervals = new long[capacity];
+        eventIntervalSamples = new int[capacity];
+        fingerprints = new long[capacity];
+        flags = new int[capacity];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean contains(long deviceId) {
+        return indexOf(deviceId) >= 0;
+    }
+
+    /**
+     * Add the device if absent and keep its identifier up to date.
+     * Only this method and {@link #markWebhookReceived} add devices, the setters ignore unknown devices,
+     * so a device removed while it's being synced is not brought back without its identifier.
+     */
+    public synchronized void register(long deviceId, String identifier) {
+        val i = slotOf(deviceId);
+        indexIdentifier(deviceId, identifiers[i], identifier);
+        identifiers[i] = identifier;
+    }
+
+    public synchronized void remove(long deviceId) {
+        var i = indexOf(deviceId);
+        if (i < 0) {
+            return;
+        }
+        indexIdentifier(deviceId, identifiers[i], null);
+        val mask = deviceIds.length - 1;
+        // shift the following entries of the probe sequence back, so no tombstone is needed
+        var next = (i + 1) & mask;
+        while (deviceIds[next] != EMPTY) {
+            val home = mix(deviceIds[next]) & mask;
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                copySlot(next, i);
+                i = next;
+            }
+            next = (next + 1) & mask;
+        }
+        clearSlot(i);
+        size--;
+    }
+
+    public synchronized String getIdentifier(long deviceId) {
+        val i = indexOf(deviceId);
+        return i < 0 ? null : identifiers[i];
+    }
+
+    /**
+     * @return device id of the identifier or 0
+     */
+    public synchronized long findDeviceId(String identifier) {
+        val deviceId = identifierToDeviceId.get(identifier);
+        return deviceId == null ? 0 : deviceId;
+    }
+
+    public synchronized long getLastSyncTime(long deviceId) {
+        val i = indexOf(deviceId);
+        return i < 0 ? 0 : lastSyncTimes[i];
+    }
+
+    public synchronized void setLastSyncTime(long deviceId, long timeMillis) {
+        val i = indexOf(deviceId);
+        if (i >= 0) {
+            lastSyncTimes[i] = timeMillis;
+        }
+    }
+
+    public synchronized long getLastWebhookReceivedTime(long deviceId) {
+        val i = indexOf(deviceId);
+        return i < 0 ? 0 : lastWebhookReceivedTimes[i];
+    }
+
+    public synchronized long getLastEventCreatedTime(long deviceId) {
+        val i = indexOf(deviceId);
+        return i < 0 ? 0 : lastEventCreatedTimes[i];
+    }
+
+    public synchronized long getFingerprint(long deviceId) {
+        val i = indexOf(deviceId);
+        return i < 0 ? 0 : fingerprints[i];
+    }
+
+    public synchronized void setFingerprint(long deviceId, long fingerprint) {
+        val i = indexOf(deviceId);
+        if (i >= 0) {
+            fingerprints[i] = fingerprint;
+        }
+    }
+
+    /**
+     * @return true if the flag is set by this call, false if it was already set or the device is unknown
+     */
+    public synchronized boolean setFlag(long deviceId, int flag) {
+        val i = indexOf(deviceId);
+        if (i < 0 || (flags[i] & flag) != 0) {
+            return false;
+        }
+        flags[i] |= flag;
+        return true;
+    }
+
+    public synchronized void clearFlag(long deviceId, int flag) {
+        val i = indexOf(deviceId);
+        if (i >= 0) {
+            flags[i] &= ~flag;
+        }
+    }
+
+    /**
+     * Record webhook data of a device and check the event cadence.
+     *
+     * @return creation time of the previous event if the interval is longer than the gap threshold, otherwise -1
+     */
+    public synchronized long markWebhookReceived(long deviceId, long receivedAtMillis, long eventCreatedAtMillis,
+                                                 long minGapMillis, double gapFactor, int minSamples, double smoothing) {
+        val i = slotOf(deviceId);
+        lastWebhookReceivedTimes[i] = receivedAtMillis;
+        val previous = lastEventCreatedTimes[i];
+        if (eventCreatedAtMillis <= previous) {
+            // duplicated or out of order
+            return -1;
+        }
+        lastEventCreatedTimes[i] = eventCreatedAtMillis;
+        if (previous == 0) {
+            return -1;
+        }
+        val interval = eventCreatedAtMillis - previous;
+        if (eventIntervalSamples[i] >= minSamples && interval > Math.max(minGapMillis, gapFactor * meanEventIntervals[i])) {
+            // keep the mean of the normal cadence
+            return previous;
+        }
+        meanEventIntervals[i] = eventIntervalSamples[i] == 0
+                ? interval
+                : meanEventIntervals[i] + Math.round(smoothing * (interval - meanEventIntervals[i]));
+        eventIntervalSamples[i]++;
+        return -1;
+    }
+
+    public interface DeviceConsumer {
+        void accept(long deviceId, String identifier);
+    }
+
+    public synchronized void forEachDevice(DeviceConsumer consumer) {
+        for (int i = 0; i < deviceIds.length; i++) {
+            if (deviceIds[i] != EMPTY && identifiers[i] != null) {
+                consumer.accept(deviceIds[i], identifiers[i]);
+            }
+        }
+    }
+
+    public interface LastEventConsumer {
+        void accept(long deviceId, String identifier, long lastEventCreatedTime);
+    }
+
+    public synchronized void forEachLastEventCreatedTime(LastEventConsumer consumer) {
+        for (int i = 0; i < deviceIds.length; i++) {
+            if (deviceIds[i] != EMPTY && identifiers[i] != null && lastEventCreatedTimes[i] > 0) {
+                consumer.accept(deviceIds[i], identifiers[i], lastEventCreatedTimes[i]);
+            }
+        }
+    }
+
+    /**
+     * Write all states except the transient flags.
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < deviceIds.length; i++) {
+            if (deviceIds[i] == EMPTY) {
+                continue;
+            }
+            out.writeLong(deviceIds[i]);
+            out.writeUTF(identifiers[i] == null ? "" : identifiers[i]);
+            out.writeLong(lastSyncTimes[i]);
+            out.writeLong(lastWebhookReceivedTimes[i]);
+            out.writeLong(lastEventCreatedTimes[i]);
+            out.writeLong(meanEventIntervals[i]);
+            out.writeInt(eventIntervalSamples[i]);
+            out.writeLong(fingerprints[i]);
+        }
+    }
+
+    /**
+     * Replace all states with the ones written by {@link #writeTo}, the devices without identifier are dropped.
+     */
+    public synchronized void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a device sync state file");
+        }
+        val version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported device sync state version: " + version);
+        }
+        val count = in.readInt();
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1));
+        identifierToDeviceId.clear();
+        size = 0;
+        for (int n = 0; n < count; n++) {
+            val deviceId = in.readLong();
+            val identifier = in.readUTF();
+            val lastSyncTime = in.readLong();
+            val lastWebhookReceivedTime = in.readLong();
+            val lastEventCreatedTime = in.readLong();
+            val meanEventInterval = in.readLong();
+            val eventIntervalSampleCount = in.readInt();
+            val fingerprint = in.readLong();
+            if (identifier.isEmpty()) {
+                continue;
+            }
+            val i = slotOf(deviceId);
+            identifiers[i] = identifier;
+            indexIdentifier(deviceId, null, identifier);
+            lastSyncTimes[i] = lastSyncTime;
+            lastWebhookReceivedTimes[i] = lastWebhookReceivedTime;
+            lastEventCreatedTimes[i] = lastEventCreatedTime;
+            meanEventIntervals[i] = meanEventInterval;
+            eventIntervalSamples[i] = eventIntervalSampleCount;
+            fingerprints[i] = fingerprint;
+        }
+    }
+
+    private void indexIdentifier(long deviceId, String oldIdentifier, String newIdentifier) {
+        if (oldIdentifier != null && !oldIdentifier.equals(newIdentifier)) {
+            identifierToDeviceId.remove(oldIdentifier, deviceId);
+        }
+        if (newIdentifier != null) {
+            identifierToDeviceId.put(newIdentifier, deviceId);
+        }
+    }
+
+    private int indexOf(long deviceId) {
+        if (deviceId == EMPTY) {
+            return -1;
+        }
+        val mask = deviceIds.length - 1;
+        for (int i = mix(deviceId) & mask; ; i = (i + 1) & mask) {
+            if (deviceIds[i] == deviceId) {
+                return i;
+            }
+            if (deviceIds[i] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return slot of the device, the device is added if absent.
+     * The arrays may be reallocated, so callers must not hold an array reference across this call
+     */
+    private int slotOf(long deviceId) {
+        if (deviceId == EMPTY) {
+            throw new IllegalArgumentException("deviceId must not be 0");
+        }
+        val existing = indexOf(deviceId);
+        if (existing >= 0) {
+            return existing;
+        }
+        if ((size + 1) * 2 > deviceIds.length) {
+            resize();
+        }
+        val mask = deviceIds.length - 1;
+        var i = mix(deviceId) & mask;
+        while (deviceIds[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        deviceIds[i] = deviceId;
+        size++;
+        return i;
+    }
+
+    private void resize() {
+        val oldDeviceIds = deviceIds;
+        val oldIdentifiers = identifiers;
+        val oldLastSyncTimes = lastSyncTimes;
+        val oldLastWebhookReceivedTimes = lastWebhookReceivedTimes;
+        val oldLastEventCreatedTimes = lastEventCreatedTimes;
+        val oldMeanEventIntervals = meanEventIntervals;
+        val oldEventIntervalSamples = eventIntervalSamples;
+        val oldFingerprints = fingerprints;
+        val oldFlags = flags;
+        allocate(oldDeviceIds.length * 2);
+        val mask = deviceIds.length - 1;
+        for (int j = 0; j < oldDeviceIds.length; j++) {
+            if (oldDeviceIds[j] == EMPTY) {
+                continue;
+            }
+            var i = mix(oldDeviceIds[j]) & mask;
+            while (deviceIds[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            deviceIds[i] = oldDeviceIds[j];
+            identifiers[i] = oldIdentifiers[j];
+            lastSyncTimes[i] = oldLastSyncTimes[j];
+            lastWebhookReceivedTimes[i] = oldLastWebhookReceivedTimes[j];
+            lastEventCreatedTimes[i] = oldLastEventCreatedTimes[j];
+            meanEventIntervals[i] = oldMeanEventIntervals[j];
+            eventIntervalSamples[i] = oldEventIntervalSamples[j];
+            fingerprints[i] = oldFingerprints[j];
+            flags[i] = oldFlags[j];
+        }
+    }
+
+    private void copySlot(int from, int to) {
+        deviceIds[to] = deviceIds[from];
+        identifiers[to] = identifiers[from];
+        lastSyncTimes[to] = lastSyncTimes[from];
+        lastWebhookReceivedTimes[to] = lastWebhookReceivedTimes[from];
+        lastEventCreatedTimes[to] = lastEventCreatedTimes[from];
+        meanEventIntervals[to] = meanEventIntervals[from];
+        eventIntervalSamples[to] = eventIntervalSamples[from];
+        fingerprints[to] = fingerprints[from];
+        flags[to] = flags[from];
+    }
+
+    private void clearSlot(int i) {
+        deviceIds[i] = EMPTY;
+        identifiers[i] = null;
+        lastSyncTimes[i] = 0;
+        lastWebhookReceivedTimes[i] = 0;
+        lastEventCreatedTimes[i] = 0;
+        meanEventIntervals[i] = 0;
+        eventIntervalSamples[i] = 0;
+        fingerprints[i] = 0;
+        flags[i] = 0;
+    }
+
+    private static int mix(long key) {
+        var h = key * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 32;
+        return (int) h;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DeviceSyncStateTable{size=" + size + ", capacity=" + deviceIds.length + "}";
+    }
+
+}
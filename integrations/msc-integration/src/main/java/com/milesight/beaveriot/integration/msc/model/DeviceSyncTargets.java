@@ -0,0 +1,39 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import java.util.Arrays;
+
+/**
+ * Growable parallel arrays of device identifier and MSC device id, the devices whose history should be synced.
+ * Not thread-safe.
+ */
+public class DeviceSyncTargets {
+
+    private String[] identifiers = new String[64];
+
+    private long[] deviceIds = new long[64];
+
+    private int size = 0;
+
+    public void add(String identifier, long deviceId) {
+        if (size == identifiers.length) {
+            identifiers = Arrays.copyOf(identifiers, size * 2);
+            deviceIds = Arrays.copyOf(deviceIds, size * 2);
+        }
+        identifiers[size] = identifier;
+        deviceIds[size] = deviceId;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getIdentifier(int index) {
+        return identifiers[index];
+    }
+
+    public long getDeviceId(int index) {
+        return deviceIds[index];
+    }
+
+}
@@ -7,6 +7,7 @@ import lombok.*;
 @Getter
 @RequiredArgsConstructor
 public enum IntegrationStatus implements EnumCode {
+    STARTING,
     READY,
     NOT_READY,
     ERROR,
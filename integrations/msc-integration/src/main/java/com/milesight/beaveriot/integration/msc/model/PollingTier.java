@@ -0,0 +1,48 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * A group of devices polled with its own period instead of the period of the scheduled data fetch.
+ *
+ * @param name        name of the tier, only used in logs
+ * @param period      polling period in seconds
+ * @param identifiers device identifiers (SN) of the tier, a pattern ending with '*' matches the identifiers with the prefix,
+ *                    e.g. the SN prefix of a device model
+ */
+public record PollingTier(String name, int period, List<String> identifiers) {
+
+    public static final int MIN_PERIOD_SECONDS = 30;
+
+    public static final int MAX_PERIOD_SECONDS = 86400;
+
+    public boolean isValid() {
+        return period >= MIN_PERIOD_SECONDS && period <= MAX_PERIOD_SECONDS && identifiers != null && !identifiers.isEmpty();
+    }
+
+    public boolean matches(String identifier) {
+        for (String pattern : identifiers) {
+            if (pattern.endsWith("*")
+                    ? identifier.startsWith(pattern.substring(0, pattern.length() - 1))
+                    : identifier.equals(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the first tier matching the identifier, or null if the device is polled by the scheduled data fetch
+     */
+    @Nullable
+    public static PollingTier find(List<PollingTier> tiers, String identifier) {
+        for (PollingTier tier : tiers) {
+            if (tier.matches(identifier)) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+}
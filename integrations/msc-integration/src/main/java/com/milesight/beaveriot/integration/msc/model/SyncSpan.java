@@ -0,0 +1,118 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A phase of a sync run.
+ * <p>
+ * Spans are aggregated by name instead of being created per execution,
+ * e.g. all thing specification fetches of a run share one span, so a run with thousands of devices keeps a small tree.
+ * Spans are updated concurrently by the device task threads.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class SyncSpan {
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLong durationNanos = new AtomicLong();
+
+    private final AtomicLong maxDurationNanos = new AtomicLong();
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong items = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final Map<String, SyncSpan> children = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public SyncSpan(String name) {
+        this.name = name;
+    }
+
+    /**
+     * A span which doesn't belong to any sync run, e.g. a device task triggered by webhook.
+     */
+    public static SyncSpan detached() {
+        return new SyncSpan("detached");
+    }
+
+    public SyncSpan child(String name) {
+        return children.computeIfAbsent(name, SyncSpan::new);
+    }
+
+    /**
+     * Record one execution of this phase.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the execution started
+     * @param items      number of items processed by the execution, e.g. devices or history records
+     */
+    public void end(long startNanos, long items) {
+        val duration = System.nanoTime() - startNanos;
+        durationNanos.addAndGet(duration);
+        maxDurationNanos.accumulateAndGet(duration, Math::max);
+        count.incrementAndGet();
+        this.items.addAndGet(items);
+    }
+
+    public void end(long startNanos) {
+        end(startNanos, 0);
+    }
+
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    @JsonProperty("duration")
+    public double getDurationMillis() {
+        return toMillis(durationNanos.get());
+    }
+
+    @JsonProperty("max_duration")
+    public double getMaxDurationMillis() {
+        return toMillis(maxDurationNanos.get());
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getItems() {
+        return items.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public Collection<SyncSpan> getChildren() {
+        synchronized (children) {
+            return new ArrayList<>(children.values());
+        }
+    }
+
+    @JsonIgnore
+    public long getDurationNanos() {
+        return durationNanos.get();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+}
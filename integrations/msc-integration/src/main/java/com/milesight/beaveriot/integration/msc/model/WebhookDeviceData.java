@@ -0,0 +1,84 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import lombok.*;
+
+import java.util.Arrays;
+
+/**
+ * Data of a device_data webhook event, the TSL payload is kept as flattened values.
+ * <p>
+ * The path of a value is relative to the TSL item, nested fields are joined by '@',
+ * e.g. {@code temperature} or {@code location@latitude}.
+ * Not thread-safe.
+ */
+@Getter
+@Setter
+public class WebhookDeviceData {
+
+    /**
+     * MSC device id, 0 if absent
+     */
+    private long deviceId;
+
+    private String sn;
+
+    /**
+     * PROPERTY, EVENT or SERVICE
+     */
+    private String type;
+
+    private String tslId;
+
+    /**
+     * Whether the event carries a payload object, which may still have no value
+     */
+    private boolean payloadPresent;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String[] paths = new String[8];
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Object[] values = new Object[8];
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int size = 0;
+
+    public void addValue(String path, Object value) {
+        if (size == paths.length) {
+            paths = Arrays.copyOf(paths, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        paths[size] = path;
+        values[size] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getPath(int index) {
+        return paths[index];
+    }
+
+    public Object getValue(int index) {
+        return values[index];
+    }
+
+    @Override
+    public String toString() {
+        val builder = new StringBuilder("WebhookDeviceData{deviceId=").append(deviceId)
+                .append(", sn=").append(sn)
+                .append(", type=").append(type)
+                .append(", tslId=").append(tslId)
+                .append(", values={");
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "" : ", ").append(paths[i]).append('=').append(values[i]);
+        }
+        return builder.append("}}").toString();
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.milesight.beaveriot.integration.msc.model;
+
+import javax.annotation.Nullable;
+
+/**
+ * An event of a webhook request body.
+ *
+ * @param eventCreatedTime creation time of the event in MSC, in seconds, 0 if absent
+ * @param deviceData       decoded data of a device_data event, null for the other event types
+ */
+public record WebhookEvent(@Nullable String eventId, long eventCreatedTime, @Nullable String eventType,
+                           @Nullable WebhookDeviceData deviceData) {
+}
@@ -0,0 +1,231 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import com.milesight.beaveriot.integration.msc.model.IntegrationStatus;
+import com.milesight.msc.sdk.error.MscApiException;
+import com.milesight.msc.sdk.error.MscSdkException;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Circuit breaker per MSC OpenAPI endpoint.
+ * <p>
+ * An endpoint is opened after consecutive failures, its calls then fail fast with {@link CircuitOpenException}.
+ * While any endpoint is open the connection is probed periodically, when a probe succeeds the open endpoints
+ * are half-opened and the next call of each endpoint decides whether it's closed or opened again.
+ * The state is reflected into the openapi status: ERROR when an endpoint is opened, READY when a probe succeeds.
+ * <p>
+ * An error response from MSC means the endpoint is reachable, so only the other failures are counted.
+ */
+@Slf4j
+@Component
+public class MscCircuitBreaker {
+
+    private static final int FAILURE_THRESHOLD = 5;
+
+    private static final long PROBE_INTERVAL_SECONDS = 10;
+
+    private final ConcurrentHashMap<String, EndpointCircuit> endpointToCircuit = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean probeScheduled = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(r -> {
+        val thread = new Thread(r, "msc-circuit-prober");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Lazy
+    @Autowired
+    private IMscClientProvider mscClientProvider;
+
+    @Autowired
+    private MscMetrics mscMetrics;
+
+    @Autowired
+    private MscIntegrationStatusManager mscIntegrationStatusManager;
+
+    /**
+     * Execute a MSC OpenAPI call through the circuit of the endpoint, its duration is recorded by {@link MscMetrics#timeCall}.
+     *
+     * @throws CircuitOpenException if the circuit of the endpoint is open
+     */
+    public <T> T call(String endpoint, MscMetrics.MscCall<T> call) throws IOException, MscSdkException {
+        val circuit = endpointToCircuit.computeIfAbsent(endpoint, EndpointCircuit::new);
+        if (!circuit.tryAcquire()) {
+            throw new CircuitOpenException(endpoint);
+        }
+        try {
+            val result = mscMetrics.timeCall(endpoint, call);
+            onSuccess(circuit);
+            return result;
+        } catch (MscApiException e) {
+            onSuccess(circuit);
+            throw e;
+        } catch (IOException | MscSdkException | RuntimeException e) {
+            onFailure(circuit, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if any endpoint is open, e.g. MSC is unreachable
+     */
+    public boolean isAnyOpen() {
+        for (val circuit : endpointToCircuit.values()) {
+            if (circuit.state == State.OPEN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Close all circuits, e.g. the connection is verified with new settings.
+     */
+    public void reset() {
+        endpointToCircuit.values().forEach(EndpointCircuit::close);
+    }
+
+    private void onSuccess(EndpointCircuit circuit) {
+        if (circuit.recordSuccess()) {
+            log.info("Circuit of MSC endpoint '{}' closed", circuit.endpoint);
+        }
+    }
+
+    private void onFailure(EndpointCircuit circuit, Exception e) {
+        if (!circuit.recordFailure()) {
+            return;
+        }
+        log.warn("Circuit of MSC endpoint '{}' opened: {}", circuit.endpoint, e.toString());
+        mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.ERROR);
+        scheduleProbe();
+    }
+
+    private void scheduleProbe() {
+        if (probeScheduled.compareAndSet(false, true)) {
+            prober.schedule(this::probe, PROBE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void probe() {
+        probeScheduled.set(false);
+        if (!isAnyOpen()) {
+            return;
+        }
+        val startNanos = System.nanoTime();
+        try {
+            val mscClient = mscClientProvider.getMscClient();
+            if (mscClient == null) {
+                return;
+            }
+            mscClient.test();
+            mscMetrics.recordCall("test", startNanos, null);
+        } catch (Exception e) {
+            mscMetrics.recordCall("test", startNanos, e);
+            log.debug("MSC is still unavailable: {}", e.toString());
+            scheduleProbe();
+            return;
+        }
+        log.info("MSC is available again, half-open the circuits");
+        endpointToCircuit.values().forEach(EndpointCircuit::halfOpen);
+        // the syncs aborted by the open circuits are resumed by the status change
+        mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.READY);
+    }
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        /**
+         * One trial call is allowed to decide whether the circuit is closed or opened again
+         */
+        HALF_OPEN,
+    }
+
+    @RequiredArgsConstructor
+    private static class EndpointCircuit {
+
+        private final String endpoint;
+
+        private volatile State state = State.CLOSED;
+
+        private int consecutiveFailures = 0;
+
+        private boolean trialInFlight = false;
+
+        synchronized boolean tryAcquire() {
+            return switch (state) {
+                case CLOSED -> true;
+                case OPEN -> false;
+                case HALF_OPEN -> {
+                    if (trialInFlight) {
+                        yield false;
+                    }
+                    trialInFlight = true;
+                    yield true;
+                }
+            };
+        }
+
+        /**
+         * @return true if the circuit is closed by this success
+         */
+        synchronized boolean recordSuccess() {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            if (state == State.CLOSED) {
+                return false;
+            }
+            state = State.CLOSED;
+            return true;
+        }
+
+        /**
+         * @return true if the circuit is opened by this failure
+         */
+        synchronized boolean recordFailure() {
+            consecutiveFailures++;
+            trialInFlight = false;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD)) {
+                state = State.OPEN;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void halfOpen() {
+            if (state == State.OPEN) {
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+        }
+
+        synchronized void close() {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+
+    }
+
+    /**
+     * Thrown instead of calling an endpoint whose circuit is open.
+     */
+    public static class CircuitOpenException extends IOException {
+
+        public CircuitOpenException(String endpoint) {
+            super("Circuit of MSC endpoint '" + endpoint + "' is open");
+        }
+
+    }
+
+}
@@ -1,8 +1,6 @@
 package com.milesight.beaveriot.integration.msc.service;
 
 import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
-import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
-import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
 import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
 import com.milesight.beaveriot.eventbus.api.Event;
@@ -15,7 +13,6 @@ import lombok.extern.slf4j.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
 import java.util.Objects;
 
 
@@ -23,13 +20,17 @@ import java.util.Objects;
 @Component
 public class MscConnectionService implements IMscClientProvider {
 
-    private static final String OPENAPI_STATUS_KEY = MscConnectionPropertiesEntities.getKey(MscConnectionPropertiesEntities.Fields.openapiStatus);
-
     @Autowired
     private EntityValueServiceProvider entityValueServiceProvider;
 
     @Autowired
-    private ExchangeFlowExecutor exchangeFlowExecutor;
+    private MscIntegrationStatusManager mscIntegrationStatusManager;
+
+    @Autowired
+    private MscMetrics mscMetrics;
+
+    @Autowired
+    private MscCircuitBreaker mscCircuitBreaker;
 
     @Getter
     private MscClient mscClient;
@@ -39,7 +40,7 @@ public class MscConnectionService implements IMscClientProvider {
         if (isConfigChanged(event)) {
             val openapiSettings = event.getPayload();
             initConnection(openapiSettings);
-            exchangeFlowExecutor.syncExchangeDown(new ExchangePayload(Map.of(OPENAPI_STATUS_KEY, IntegrationStatus.NOT_READY.name())));
+            mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.NOT_READY);
         }
         testConnection();
     }
@@ -55,12 +56,20 @@ public class MscConnectionService implements IMscClientProvider {
     }
 
     private void testConnection() {
+        val startNanos = System.nanoTime();
+        var tested = false;
         try {
             mscClient.test();
-            exchangeFlowExecutor.syncExchangeDown(new ExchangePayload(Map.of(OPENAPI_STATUS_KEY, IntegrationStatus.READY.name())));
+            tested = true;
+            mscMetrics.recordCall("test", startNanos, null);
+            mscCircuitBreaker.reset();
+            mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.READY);
         } catch (Exception e) {
+            if (!tested) {
+                mscMetrics.recordCall("test", startNanos, e);
+            }
             log.error("Error occurs while testing connection", e);
-            exchangeFlowExecutor.syncExchangeDown(new ExchangePayload(Map.of(OPENAPI_STATUS_KEY, IntegrationStatus.ERROR.name())));
+            mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.ERROR);
         }
     }
 
@@ -102,10 +111,12 @@ public class MscConnectionService implements IMscClientProvider {
             if (!settings.isEmpty()) {
                 initConnection(settings);
                 testConnection();
+            } else {
+                mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.NOT_READY);
             }
         } catch (Exception e) {
             log.error("Error occurs while initializing connection", e);
-            exchangeFlowExecutor.syncExchangeDown(new ExchangePayload(Map.of(OPENAPI_STATUS_KEY, IntegrationStatus.NOT_READY.name())));
+            mscIntegrationStatusManager.updateOpenapiStatus(IntegrationStatus.NOT_READY);
         }
     }
 
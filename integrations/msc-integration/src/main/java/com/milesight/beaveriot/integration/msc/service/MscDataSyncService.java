@@ -1,22 +1,35 @@
 package com.milesight.beaveriot.integration.msc.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milesight.beaveriot.base.utils.StringUtils;
 import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
 import com.milesight.cloud.sdk.client.model.DeviceDetailResponse;
 import com.milesight.cloud.sdk.client.model.DeviceSearchRequest;
+import com.milesight.cloud.sdk.client.model.ThingSpec;
 import com.milesight.beaveriot.context.api.DeviceServiceProvider;
 import com.milesight.beaveriot.context.api.EntityServiceProvider;
 import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
+import com.milesight.beaveriot.context.constants.IntegrationConstants;
 import com.milesight.beaveriot.context.integration.model.Device;
 import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
 import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
 import com.milesight.beaveriot.eventbus.api.Event;
+import com.milesight.beaveriot.integration.msc.cluster.SyncPartitioner;
 import com.milesight.beaveriot.integration.msc.constant.MscIntegrationConstants;
 import com.milesight.beaveriot.integration.msc.entity.MscConnectionPropertiesEntities;
 import com.milesight.beaveriot.integration.msc.entity.MscServiceEntities;
+import com.milesight.beaveriot.integration.msc.model.DeviceIdentifierIndex;
+import com.milesight.beaveriot.integration.msc.model.DevicePollingQueue;
+import com.milesight.beaveriot.integration.msc.model.DeviceSyncTargets;
 import com.milesight.beaveriot.integration.msc.model.IntegrationStatus;
+import com.milesight.beaveriot.integration.msc.model.PollingTier;
+import com.milesight.beaveriot.integration.msc.model.SyncSpan;
 import com.milesight.beaveriot.integration.msc.util.MscTslUtils;
+import com.milesight.msc.sdk.error.MscSdkException;
 import com.milesight.msc.sdk.utils.TimeUtils;
 import lombok.*;
 import lombok.extern.slf4j.*;
@@ -27,18 +40,20 @@ import org.springframework.stereotype.Service;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Getter
@@ -62,32 +77,125 @@ public class MscDataSyncService {
     @Autowired
     private ExchangeFlowExecutor exchangeFlowExecutor;
 
+    @Autowired
+    private MscMetrics mscMetrics;
+
+    @Autowired
+    private MscCircuitBreaker mscCircuitBreaker;
+
+    @Autowired
+    private MscSyncTracer mscSyncTracer;
+
+    @Autowired
+    private MscRateBudget mscRateBudget;
+
+    @Autowired
+    private MscDeviceSyncStates mscDeviceSyncStates;
+
+    @Lazy
+    @Autowired
+    private MscWebhookService mscWebhookService;
+
+    @Autowired
+    private SyncPartitioner syncPartitioner;
+
+    @Autowired
+    private MscIntegrationStatusManager mscIntegrationStatusManager;
+
     private Timer timer;
 
     private int periodSeconds = 0;
 
     // Only two existing tasks allowed at a time (one running and one waiting)
-    private static final ExecutorService syncAllDataExecutor = new ThreadPoolExecutor(1, 1,
+    private static final ThreadPoolExecutor syncAllDataExecutor = new ThreadPoolExecutor(1, 1,
             0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1),
             (r, executor) -> {
                 throw new RejectedExecutionException("Another task is running.");
             });
 
-    private static final ExecutorService concurrentSyncDeviceDataExecutor = new ThreadPoolExecutor(2, 4,
+    private static final ThreadPoolExecutor concurrentSyncDeviceDataExecutor = new ThreadPoolExecutor(2, 4,
             300L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
+    // Priority lane of the refresh requests, so they don't wait behind the device tasks of a running sync
+    private static final ThreadPoolExecutor refreshDeviceExecutor = new ThreadPoolExecutor(4, 4,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(64), r -> {
+        val thread = new Thread(r, "msc-refresh-device");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        refreshDeviceExecutor.allowCoreThreadTimeOut(true);
+    }
+
     private static final ConcurrentHashMap<String, Object> deviceIdentifierToTaskLock = new ConcurrentHashMap<>(128);
 
+    private static final long DEFAULT_ORPHAN_GRACE_PERIOD_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    private static final int REMOVE_BATCH_SIZE = 50;
+
+    /**
+     * A refresh takes up to three sequential MSC round-trips for a new device, two for a known one
+     */
+    private static final long REFRESH_DEVICE_TIMEOUT_SECONDS = 10;
+
+    /**
+     * The first delta sync after a start skips listing devices when the snapshot listed them within this time
+     * or two sync periods, whichever is longer
+     */
+    private static final long WARM_START_MAX_LISTING_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final long HISTORY_PAGE_SIZE = 100;
+
+    private static final String PROPERTIES_HISTORY_ENDPOINT = "get_properties_history";
+
+    /**
+     * A device is considered silent when no webhook data is received within this time or two sync periods, whichever is longer
+     */
+    private static final long MIN_WEBHOOK_SILENCE_SECONDS = TimeUnit.MINUTES.toSeconds(10);
+
+    /**
+     * Tombstones of local devices missing from MSC, the value is the time (ms) they were first found missing
+     */
+    private final ConcurrentHashMap<String, Long> orphanIdentifierToMissingSince = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean firstSyncPending = new AtomicBoolean(true);
+
+    private final Set<String> refreshingIdentifiers = ConcurrentHashMap.newKeySet();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Devices of the polling tiers, they are queued by the delta sync and polled by the dispatcher when their tier is due
+     */
+    private final DevicePollingQueue pollingQueue = new DevicePollingQueue();
+
+    /**
+     * Loaded from the settings on first use
+     */
+    private volatile List<PollingTier> pollingTiers;
+
+    private volatile Thread pollingDispatcher;
+
     @EventSubscribe(payloadKeyExpression = "msc-integration.integration.scheduled_data_fetch.*", eventType = ExchangeEvent.EventType.DOWN)
     public void onScheduledDataFetchPropertiesUpdate(Event<MscConnectionPropertiesEntities.ScheduledDataFetch> event) {
+        if (event.getPayload().getPollingTiers() != null) {
+            pollingTiers = parsePollingTiers(event.getPayload().getPollingTiers());
+            // devices are queued again with their new tiers by the next delta sync
+            pollingQueue.clear();
+        }
+        if (event.getPayload().getPeriod() == null) {
+            // e.g. only the orphan grace period is updated, which is read by each sync run
+            return;
+        }
         periodSeconds = event.getPayload().getPeriod();
         restart();
     }
 
     @EventSubscribe(payloadKeyExpression = "msc-integration.integration.openapi_status", eventType = ExchangeEvent.EventType.DOWN)
     public void onOpenapiStatusUpdate(Event<MscConnectionPropertiesEntities> event) {
-        val status = event.getPayload().getOpenapiStatus();
-        if (IntegrationStatus.READY.name().equals(status)) {
+        // the published status may be outdated by a debounced change
+        if (IntegrationStatus.READY.equals(mscIntegrationStatusManager.getOpenapiStatus())) {
             try {
                 syncAllDataExecutor.submit(this::syncDeltaData);
             } catch (RejectedExecutionException  e) {
@@ -96,10 +204,51 @@ public class MscDataSyncService {
         }
     }
 
-    @SneakyThrows
     @EventSubscribe(payloadKeyExpression = "msc-integration.integration.sync_device", eventType = ExchangeEvent.EventType.DOWN)
     public void onSyncDevice(Event<MscServiceEntities.SyncDevice> event) {
-        syncAllDataExecutor.submit(this::syncAllData).get();
+        // the full sync may take a long time, it must not block the event thread
+        try {
+            syncAllDataExecutor.submit(this::syncAllData);
+        } catch (RejectedExecutionException e) {
+            log.warn("Sync all data skipped, another task is running.");
+        }
+    }
+
+    /**
+     * Refresh a device on the priority lane and return immediately, the result is logged.
+     */
+    @EventSubscribe(payloadKeyExpression = "msc-integration.integration.refresh_device", eventType = ExchangeEvent.EventType.DOWN)
+    public void onRefreshDevice(Event<MscServiceEntities.RefreshDevice> event) {
+        val identifier = event.getPayload().getSn();
+        if (identifier == null || identifier.isEmpty()) {
+            return;
+        }
+        if (mscClientProvider == null || mscClientProvider.getMscClient() == null) {
+            log.warn("MscClient not initiated.");
+            return;
+        }
+        if (!refreshingIdentifiers.add(identifier)) {
+            log.info("Skip refresh because device is being refreshed: {}", identifier);
+            return;
+        }
+        val startTime = System.currentTimeMillis();
+        try {
+            refreshDevice(identifier)
+                    .orTimeout(REFRESH_DEVICE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .whenComplete((refreshed, e) -> {
+                        refreshingIdentifiers.remove(identifier);
+                        if (e != null) {
+                            log.warn("Refresh device '{}' failed: {}", identifier, e.toString());
+                        } else if (Boolean.TRUE.equals(refreshed)) {
+                            log.info("Device '{}' refreshed in {} ms", identifier, System.currentTimeMillis() - startTime);
+                        } else {
+                            log.warn("Device '{}' not refreshed", identifier);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            refreshingIdentifiers.remove(identifier);
+            log.warn("Refresh device '{}' rejected, too many refresh requests.", identifier);
+        }
     }
 
 
@@ -113,10 +262,26 @@ public class MscDataSyncService {
             timer.cancel();
             timer = null;
         }
+        if (pollingDispatcher != null) {
+            pollingDispatcher.interrupt();
+            pollingDispatcher = null;
+        }
+        pollingQueue.clear();
         log.info("timer stopped");
     }
 
     public void init() {
+        mscMetrics.registerInFlightDeviceTasks(deviceIdentifierToTaskLock::size);
+        mscMetrics.registerExecutorQueue("sync_all_data", () -> syncAllDataExecutor.getQueue().size());
+        mscMetrics.registerExecutorQueue("sync_device_data", () -> concurrentSyncDeviceDataExecutor.getQueue().size());
+        // devices moved to this node shouldn't wait for the next period
+        syncPartitioner.addRebalanceListener(() -> {
+            try {
+                syncAllDataExecutor.submit(this::syncDeltaData);
+            } catch (RejectedExecutionException e) {
+                log.debug("Sync after rebalance skipped, another task is running.");
+            }
+        });
         start();
     }
 
@@ -146,6 +311,9 @@ public class MscDataSyncService {
             return;
         }
         timer = new Timer();
+        pollingDispatcher = new Thread(this::dispatchPollingQueue, "msc-polling-dispatcher");
+        pollingDispatcher.setDaemon(true);
+        pollingDispatcher.start();
 
         // setup timer
         val periodMills = periodSeconds * 1000L;
@@ -218,159 +386,594 @@ public class MscDataSyncService {
             log.warn("MscClient not initiated.");
             return;
         }
-        syncDevicesFromMsc();
-        syncDeviceHistoryDataFromMsc(delta);
+        val startTime = System.currentTimeMillis();
+        val run = mscSyncTracer.startRun(delta);
+        try {
+            final DeviceSyncTargets targets;
+            if (firstSyncPending.getAndSet(false) && delta && isDeviceListingFresh()) {
+                // devices added to MSC while stopped are listed by the next sync, or added when their webhook data arrives
+                targets = loadSyncTargetsFromSnapshot();
+                log.info("Warm start, sync history of {} devices from the snapshot", targets.size());
+            } else {
+                targets = syncDevicesFromMsc(run.root());
+            }
+            syncDeviceHistoryDataFromMsc(delta, targets, run.root());
+        } catch (Exception e) {
+            run.root().error();
+            throw e;
+        } finally {
+            mscSyncTracer.finishRun(run);
+            mscDeviceSyncStates.saveIfModified();
+            mscMetrics.syncFinished(delta, System.currentTimeMillis() - startTime);
+            mscMetrics.publishSummary();
+        }
     }
 
-    private void syncDevicesFromMsc() throws IOException {
-        log.info("Sync devices from MSC.");
+    /**
+     * Local devices are only loaded to build a compact identifier index,
+     * then MSC devices are streamed page by page and diffed against the index.
+     *
+     * @return devices whose history should be synced
+     */
+    private DeviceSyncTargets syncDevicesFromMsc(SyncSpan runSpan) throws IOException, MscSdkException {
+        log.info("Sync devices from MSC, cluster members: {}", syncPartitioner.getMemberCount());
+        val listSpan = runSpan.child("list_devices");
+        val otherShardsSpan = runSpan.child("other_shards");
+        val devicesSpan = runSpan.child("sync_devices");
+        val devicesStartNanos = System.nanoTime();
         val mscClient = mscClientProvider.getMscClient();
-        val allDevices = deviceServiceProvider.findAll(MscIntegrationConstants.INTEGRATION_IDENTIFIER);
-        log.info("Found {} devices from local.", allDevices.size());
-        val existingDevices = allDevices.stream().map(Device::getIdentifier).collect(Collectors.toSet());
+        val localDevices = loadLocalDeviceIndex(runSpan);
+        log.info("Found {} devices from local.", localDevices.size());
+        val targets = new DeviceSyncTargets();
         long pageNumber = 1;
         long pageSize = 10;
         long total = 0;
-        long fetched = -1;
-        while (fetched < total) {
-            val response = mscClient.device().searchDetails(new DeviceSearchRequest()
-                            .pageSize(pageSize)
-                            .pageNumber(pageNumber))
-                    .execute()
+        long fetched = 0;
+        do {
+            if (mscCircuitBreaker.isAnyOpen()) {
+                // the listing is incomplete, so orphans are not removed and the listing time is not updated
+                log.warn("Pull devices from MSC aborted because MSC is unavailable, fetched devices: {}", fetched);
+                return targets;
+            }
+            val listStartNanos = System.nanoTime();
+            val requestPageNumber = pageNumber;
+            val response = mscCircuitBreaker.call("search_details", () -> mscClient.device()
+                            .searchDetails(new DeviceSearchRequest()
+                                    .pageSize(pageSize)
+                                    .pageNumber(requestPageNumber))
+                            .execute())
                     .body();
             if (response == null || response.getData() == null || response.getData().getTotal() == null) {
                 log.warn("Response is empty: {}", response);
-                return;
+                return targets;
             }
             val list = response.getData().getContent();
             if (list == null || list.isEmpty()) {
                 log.warn("Content is empty.");
-                return;
+                return targets;
             }
-            fetched += pageSize;
+            listSpan.end(listStartNanos, list.size());
+            fetched += list.size();
             total = response.getData().getTotal();
+            pageNumber++;
 
-            val syncDeviceTasks = list.stream().map(details -> {
+            val tasks = new ArrayList<Task>(list.size());
+            list.forEach(details -> {
                 val identifier = details.getSn();
                 if (identifier == null) {
-                    return CompletableFuture.completedFuture(null);
+                    return;
+                }
+                // still listed by MSC, so it must not be tombstoned even if this page lacks its device id
+                val existing = localDevices.markSeen(identifier);
+                // a device which shows up again clears its tombstone, a later miss starts a new grace period
+                orphanIdentifierToMissingSince.remove(identifier);
+                if (details.getDeviceId() == null) {
+                    return;
+                }
+                if (!syncPartitioner.isLocal(identifier)) {
+                    // synced by another node of the cluster
+                    otherShardsSpan.end(System.nanoTime(), 1);
+                    return;
                 }
                 var type = Task.Type.ADD_LOCAL_DEVICE;
-                if (existingDevices.contains(identifier)) {
-                    existingDevices.remove(identifier);
+                if (existing) {
                     type = Task.Type.UPDATE_LOCAL_DEVICE;
                 }
-                return syncDeviceData(new Task(type, identifier, details));
-            }).toArray(CompletableFuture[]::new);
-            CompletableFuture.allOf(syncDeviceTasks);
-        }
+                tasks.add(new Task(type, identifier, details));
+            });
+            val syncDeviceTasks = tasks.stream()
+                    .map(task -> syncDeviceData(task, devicesSpan))
+                    .toList();
+            // wait for the page, so history sync only starts after all devices are added
+            CompletableFuture.allOf(syncDeviceTasks.toArray(CompletableFuture[]::new)).join();
+            for (int i = 0; i < tasks.size(); i++) {
+                val task = tasks.get(i);
+                val result = syncDeviceTasks.get(i).join();
+                // a skipped update (null result) means the device is being synced by another task, it still exists locally
+                if (Boolean.TRUE.equals(result) || (result == null && task.type == Task.Type.UPDATE_LOCAL_DEVICE)) {
+                    targets.add(task.identifier, task.details.getDeviceId());
+                    mscDeviceSyncStates.register(task.details.getDeviceId(), task.identifier);
+                }
+            }
+        } while (fetched < total);
         log.info("Pull devices from MSC finished, total devices: {}", total);
 
-        val removeDevicesTasks = existingDevices.stream()
-                .map(identifier -> syncDeviceData(new Task(Task.Type.REMOVE_LOCAL_DEVICE, identifier, null)))
-                .toArray(CompletableFuture[]::new);
-        CompletableFuture.allOf(removeDevicesTasks);
+        removeOrphanDevices(localDevices, devicesSpan);
+        mscDeviceSyncStates.setLastDeviceListingTime(System.currentTimeMillis());
+        devicesSpan.end(devicesStartNanos, total);
+        return targets;
     }
 
-    private void syncDeviceHistoryDataFromMsc(boolean delta) {
-        log.info("Sync device history data from MSC.");
-        val allDevices = deviceServiceProvider.findAll(MscIntegrationConstants.INTEGRATION_IDENTIFIER);
-        log.info("Found {} devices from local.", allDevices.size());
-        allDevices.forEach(device -> {
-            try {
-                int lastSyncTime = 0;
-                if (delta) {
-                    lastSyncTime = getAndUpdateLastSyncTime(device);
-                }
-                syncPropertiesHistory(device, lastSyncTime);
-                // events and services are not supported yet
-            } catch (Exception e) {
-                log.error("Error occurs while syncing device history data from MSC, device key: {}", device.getKey(), e);
+    private boolean isDeviceListingFresh() {
+        val lastDeviceListingTime = mscDeviceSyncStates.getLastDeviceListingTime();
+        val maxAgeMillis = Math.max(WARM_START_MAX_LISTING_AGE_MILLIS, 2000L * periodSeconds);
+        return mscDeviceSyncStates.size() > 0
+                && lastDeviceListingTime > 0
+                && System.currentTimeMillis() - lastDeviceListingTime < maxAgeMillis;
+    }
+
+    /**
+     * @return devices of this node known by the snapshot of the last run
+     */
+    private DeviceSyncTargets loadSyncTargetsFromSnapshot() {
+        val targets = new DeviceSyncTargets();
+        mscDeviceSyncStates.forEachDevice((deviceId, identifier) -> {
+            if (syncPartitioner.isLocal(identifier)) {
+                targets.add(identifier, deviceId);
             }
         });
-        log.info("Sync device history data from MSC finished, total devices: {}", allDevices.size());
+        return targets;
+    }
+
+    /**
+     * Local devices missing from a complete MSC listing are tombstoned first,
+     * and only removed when they are still missing after the grace period.
+     */
+    private void removeOrphanDevices(DeviceIdentifierIndex localDevices, SyncSpan devicesSpan) {
+        val now = System.currentTimeMillis();
+        val gracePeriodMillis = TimeUnit.SECONDS.toMillis(getOrphanGracePeriodSeconds());
+        // forget tombstones of devices which are already removed locally or moved to another node
+        orphanIdentifierToMissingSince.keySet().removeIf(identifier -> !localDevices.contains(identifier) || !syncPartitioner.isLocal(identifier));
+
+        val expiredOrphans = new ArrayList<String>();
+        localDevices.forEachUnseen(identifier -> {
+            if (!syncPartitioner.isLocal(identifier)) {
+                return;
+            }
+            val missingSince = orphanIdentifierToMissingSince.computeIfAbsent(identifier, k -> now);
+            if (now - missingSince >= gracePeriodMillis) {
+                expiredOrphans.add(identifier);
+            }
+        });
+        if (orphanIdentifierToMissingSince.isEmpty()) {
+            return;
+        }
+        log.info("Found {} devices missing from MSC, {} of them will be removed.", orphanIdentifierToMissingSince.size(), expiredOrphans.size());
+
+        for (int from = 0; from < expiredOrphans.size(); from += REMOVE_BATCH_SIZE) {
+            val batch = expiredOrphans.subList(from, Math.min(from + REMOVE_BATCH_SIZE, expiredOrphans.size()));
+            CompletableFuture.allOf(batch.stream()
+                            .map(identifier -> syncDeviceData(new Task(Task.Type.REMOVE_LOCAL_DEVICE, identifier, null), devicesSpan))
+                            .toArray(CompletableFuture[]::new))
+                    .join();
+        }
+    }
+
+    private long getOrphanGracePeriodSeconds() {
+        val key = MscConnectionPropertiesEntities.getKey(MscConnectionPropertiesEntities.Fields.scheduledDataFetch)
+                + "." + StringUtils.toSnakeCase(MscConnectionPropertiesEntities.ScheduledDataFetch.Fields.orphanGracePeriod);
+        return Optional.ofNullable(entityValueServiceProvider.findValueByKey(key))
+                .filter(JsonNode::canConvertToLong)
+                .map(JsonNode::longValue)
+                .filter(seconds -> seconds >= 0)
+                .orElse(DEFAULT_ORPHAN_GRACE_PERIOD_SECONDS);
+    }
+
+    private DeviceIdentifierIndex loadLocalDeviceIndex(SyncSpan runSpan) {
+        val startNanos = System.nanoTime();
+        // the device list is dropped as soon as the identifiers are copied out
+        val index = DeviceIdentifierIndex.of(deviceServiceProvider.findAll(MscIntegrationConstants.INTEGRATION_IDENTIFIER)
+                .stream()
+                .map(Device::getIdentifier)
+                .toArray(String[]::new));
+        runSpan.child("list_local_devices").end(startNanos, index.size());
+        return index;
+    }
+
+    private void syncDeviceHistoryDataFromMsc(boolean delta, DeviceSyncTargets targets, SyncSpan runSpan) {
+        log.info("Sync device history data from MSC, total devices: {}", targets.size());
+        val historySpan = runSpan.child("sync_history");
+        val suppressedSpan = historySpan.child("webhook_suppressed");
+        val tieredSpan = historySpan.child("tiered");
+        val historyStartNanos = System.nanoTime();
+        val webhookLive = delta && isWebhookLive();
+        val silenceThresholdMillis = getWebhookSilenceThresholdMillis(periodSeconds);
+        val tiers = currentPollingTiers();
+        for (int i = 0; i < targets.size(); i++) {
+            if (mscCircuitBreaker.isAnyOpen()) {
+                // the cursors of the remaining devices are kept, they are resumed by the next sync
+                log.warn("Sync device history data aborted because MSC is unavailable, remaining devices: {}", targets.size() - i);
+                break;
+            }
+            val identifier = targets.getIdentifier(i);
+            val deviceId = targets.getDeviceId(i);
+            if (delta && isPolledByDispatcher(tiers, identifier)) {
+                // polled by the dispatcher with the period of its tier, a device already queued keeps its due time
+                pollingQueue.offer(deviceId, identifier, System.currentTimeMillis());
+                tieredSpan.end(System.nanoTime(), 1);
+                continue;
+            }
+            try {
+                // full syncs are only requested by users (sync_device), so they take the priority lane of the rate budget
+                syncDeviceHistory(identifier, deviceId, delta, !delta, webhookLive, silenceThresholdMillis, historySpan, suppressedSpan);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Sync device history data interrupted.");
+                break;
+            }
+        }
+        historySpan.end(historyStartNanos, targets.size());
+        log.info("Sync device history data from MSC finished, total devices: {}", targets.size());
+    }
+
+    /**
+     * @param delta    whether only the data after the last sync is fetched
+     * @param priority whether the sync is requested by a user
+     */
+    private void syncDeviceHistory(String identifier, long deviceId, boolean delta, boolean priority, boolean webhookLive,
+                                   long silenceThresholdMillis, SyncSpan historySpan, SyncSpan suppressedSpan) throws InterruptedException {
+        val deviceKey = IntegrationConstants.formatIntegrationDeviceKey(MscIntegrationConstants.INTEGRATION_IDENTIFIER, identifier);
+        // the creation time in MSC rather than the receive time, a request replayed from the spool is not live traffic
+        val lastEventCreatedAt = mscDeviceSyncStates.getLastEventCreatedAt(deviceId);
+        if (webhookLive && System.currentTimeMillis() - lastEventCreatedAt < silenceThresholdMillis) {
+            // the webhook delivers the data of this device, polling would only fetch duplicates
+            suppressedSpan.end(System.nanoTime(), 1);
+            return;
+        }
+        if (!mscDeviceSyncStates.markHistoryInFlight(deviceId)) {
+            log.info("Skip history sync because it is running or the device is removed: {}", identifier);
+            return;
+        }
+        try {
+            long lastSyncTime = 0;
+            if (delta) {
+                // a webhook event doesn't prove the history before it is delivered, e.g. right after an outage,
+                // so the cursor only moves with the polled history
+                lastSyncTime = getLastSyncTime(deviceId, deviceKey);
+            }
+            val syncedUntil = syncHistory(deviceKey, deviceId, lastSyncTime, priority, historySpan);
+            // events and services are not supported yet
+            if (delta) {
+                // only advanced when the whole range is fetched, a failed or aborted device resumes from its cursor
+                mscDeviceSyncStates.setLastSyncTime(deviceId, syncedUntil);
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            historySpan.error();
+            log.error("Error occurs while syncing device history data from MSC, device key: {}", deviceKey, e);
+        } finally {
+            mscDeviceSyncStates.markHistoryFinished(deviceId);
+        }
+    }
+
+    /**
+     * Poll the devices of the polling tiers one by one when they are due, all of them share the rate budget with the other syncs.
+     */
+    private void dispatchPollingQueue() {
+        log.info("Polling dispatcher started");
+        // a replaced dispatcher exits as soon as its current device is done
+        while (Thread.currentThread() == pollingDispatcher && !Thread.currentThread().isInterrupted()) {
+            final DevicePollingQueue.Entry entry;
+            try {
+                entry = pollingQueue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            val identifier = entry.identifier();
+            val deviceId = entry.deviceId();
+            val tier = PollingTier.find(currentPollingTiers(), identifier);
+            if (tier == null || !syncPartitioner.isLocal(identifier) || mscDeviceSyncStates.getIdentifier(deviceId) == null) {
+                // moved out of the tiers, to another node or removed, the next delta sync decides how it's polled
+                continue;
+            }
+            val periodMillis = TimeUnit.SECONDS.toMillis(tier.period());
+            if (mscClientProvider.getMscClient() == null || mscCircuitBreaker.isAnyOpen()) {
+                pollingQueue.schedule(deviceId, identifier, System.currentTimeMillis() + periodMillis);
+                continue;
+            }
+            try {
+                val historySpan = SyncSpan.detached();
+                syncDeviceHistory(identifier, deviceId, true, entry.expedited(), isWebhookLive(),
+                        getWebhookSilenceThresholdMillis(tier.period()), historySpan, historySpan);
+            } catch (InterruptedException e) {
+                break;
+            }
+            pollingQueue.schedule(deviceId, identifier, System.currentTimeMillis() + periodMillis);
+        }
+        log.info("Polling dispatcher stopped");
+    }
+
+    /**
+     * @return true if the device belongs to a polling tier and the dispatcher is running,
+     * the tiers are not polled while the scheduled data fetch is disabled
+     */
+    private boolean isPolledByDispatcher(List<PollingTier> tiers, String identifier) {
+        return pollingDispatcher != null && PollingTier.find(tiers, identifier) != null;
+    }
+
+    private long getWebhookSilenceThresholdMillis(long pollingPeriodSeconds) {
+        return TimeUnit.SECONDS.toMillis(Math.max(MIN_WEBHOOK_SILENCE_SECONDS, 2L * pollingPeriodSeconds));
+    }
+
+    private List<PollingTier> currentPollingTiers() {
+        var tiers = pollingTiers;
+        if (tiers == null) {
+            tiers = parsePollingTiers(getPollingTiersSettings());
+            pollingTiers = tiers;
+        }
+        return tiers;
+    }
+
+    @Nullable
+    private String getPollingTiersSettings() {
+        val key = MscConnectionPropertiesEntities.getKey(MscConnectionPropertiesEntities.Fields.scheduledDataFetch)
+                + "." + StringUtils.toSnakeCase(MscConnectionPropertiesEntities.ScheduledDataFetch.Fields.pollingTiers);
+        return Optional.ofNullable(entityValueServiceProvider.findValueByKey(key))
+                .filter(JsonNode::isTextual)
+                .map(JsonNode::asText)
+                .orElse(null);
+    }
+
+    private List<PollingTier> parsePollingTiers(@Nullable String json) {
+        if (json == null || json.isBlank()) {
+            return List.of();
+        }
+        try {
+            val tiers = objectMapper.readValue(json, new TypeReference<List<PollingTier>>() {
+            });
+            val validTiers = tiers.stream()
+                    .filter(tier -> {
+                        if (!tier.isValid()) {
+                            log.warn("Invalid polling tier ignored: {}", tier);
+                        }
+                        return tier.isValid();
+                    })
+                    .toList();
+            log.info("Polling tiers loaded: {}", validTiers);
+            return validTiers;
+        } catch (JsonProcessingException e) {
+            log.warn("Invalid polling tiers ignored: {}", e.getMessage());
+            return List.of();
+        }
     }
 
     public CompletableFuture<Boolean> syncDeviceData(Task task) {
+        return syncDeviceData(task, SyncSpan.detached());
+    }
+
+    /**
+     * @param span parent span of the task, the task is recorded in the child span named after the task type
+     */
+    public CompletableFuture<Boolean> syncDeviceData(Task task, SyncSpan span) {
+        return syncDeviceData(task, span, concurrentSyncDeviceDataExecutor);
+    }
+
+    private CompletableFuture<Boolean> syncDeviceData(Task task, SyncSpan span, Executor executor) {
         // if fetching or removing data, then return
         val lock = markDeviceTaskRunning(task.identifier, task.type == Task.Type.REMOVE_LOCAL_DEVICE);
         if (lock == null) {
             log.info("Skip execution because device task is running: {}", task.identifier);
             return CompletableFuture.completedFuture(null);
         }
+        val taskSpan = span.child(task.type.name().toLowerCase());
+        try {
+            return supplyDeviceTask(task, lock, taskSpan, executor);
+        } catch (RejectedExecutionException e) {
+            markDeviceTaskFinished(task.identifier, lock);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Boolean> supplyDeviceTask(Task task, Object lock, SyncSpan taskSpan, Executor executor) {
         return CompletableFuture.supplyAsync(() -> {
+            val startNanos = System.nanoTime();
             try {
                 Device device = null;
                 switch (task.type) {
                     case REMOVE_LOCAL_DEVICE -> device = removeLocalDevice(task.identifier);
-                    case ADD_LOCAL_DEVICE -> device = addLocalDevice(task);
-                    case UPDATE_LOCAL_DEVICE -> device = updateLocalDevice(task);
+                    case ADD_LOCAL_DEVICE -> device = addLocalDevice(task, taskSpan);
+                    case UPDATE_LOCAL_DEVICE -> device = updateLocalDevice(task, taskSpan);
                 }
 
                 if (task.type != Task.Type.REMOVE_LOCAL_DEVICE && device == null) {
                     log.warn("Add or update local device failed: {}", task.identifier);
+                    taskSpan.error();
                     return false;
 
                 }
                 return true;
             } catch (Exception e) {
                 log.error("Error while syncing local device data.", e);
+                taskSpan.error();
                 return false;
             } finally {
+                taskSpan.end(startNanos, 1);
                 markDeviceTaskFinished(task.identifier, lock);
             }
-        }, concurrentSyncDeviceDataExecutor);
+        }, executor);
     }
 
-    private int getAndUpdateLastSyncTime(Device device) {
-        // update last sync time
-        val timestamp = TimeUtils.currentTimeSeconds();
-        val lastSyncTimeKey = MscIntegrationConstants.InternalPropertyIdentifier.getLastSyncTimeKey(device.getKey());
-        val lastSyncTime = Optional.ofNullable(entityValueServiceProvider.findValueByKey(lastSyncTimeKey))
-                .map(JsonNode::intValue)
-                .orElse(0);
-        exchangeFlowExecutor.syncExchangeDown(ExchangePayload.create(lastSyncTimeKey, timestamp));
-        return lastSyncTime;
+    /**
+     * Sync the details and thing specification of a device and exchange its latest properties.
+     * The latest properties of a known device are fetched concurrently with its details, so the refresh takes two round-trips.
+     *
+     * @return true if the device is refreshed
+     */
+    private CompletableFuture<Boolean> refreshDevice(String identifier) {
+        val knownDeviceId = mscDeviceSyncStates.findDeviceId(identifier);
+        if (knownDeviceId != 0) {
+            val deviceTask = syncDeviceData(new Task(Task.Type.UPDATE_LOCAL_DEVICE, identifier, null), SyncSpan.detached(), refreshDeviceExecutor);
+            val latestProperties = CompletableFuture.runAsync(() -> syncLatestProperties(identifier, knownDeviceId), refreshDeviceExecutor);
+            // a skipped update (null result) means the device is being synced by another task
+            return deviceTask.thenCombine(latestProperties, (refreshed, ignored) -> !Boolean.FALSE.equals(refreshed));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+                    val localDevice = deviceServiceProvider.findByIdentifier(identifier, MscIntegrationConstants.INTEGRATION_IDENTIFIER);
+                    return localDevice == null ? Task.Type.ADD_LOCAL_DEVICE : Task.Type.UPDATE_LOCAL_DEVICE;
+                }, refreshDeviceExecutor)
+                .thenCompose(type -> syncDeviceData(new Task(type, identifier, null), SyncSpan.detached(), refreshDeviceExecutor))
+                .thenApplyAsync(refreshed -> {
+                    val deviceId = mscDeviceSyncStates.findDeviceId(identifier);
+                    if (!Boolean.TRUE.equals(refreshed) || deviceId == 0) {
+                        return false;
+                    }
+                    syncLatestProperties(identifier, deviceId);
+                    return true;
+                }, refreshDeviceExecutor);
     }
 
+    /**
+     * Exchange the latest properties of a device, the history is left to the scheduled sync.
+     */
     @SneakyThrows
-    private void syncPropertiesHistory(Device device, int lastSyncTime) {
-        // deviceId should not be null
-        val deviceId = (String) device.getAdditional().get(MscIntegrationConstants.DeviceAdditionalDataName.DEVICE_ID);
-        long time24HoursBefore = TimeUtils.currentTimeSeconds() - TimeUnit.DAYS.toSeconds(1);
-        long startTime = Math.max(lastSyncTime, time24HoursBefore) * 1000;
+    private void syncLatestProperties(String identifier, long deviceId) {
+        val deviceKey = IntegrationConstants.formatIntegrationDeviceKey(MscIntegrationConstants.INTEGRATION_IDENTIFIER, identifier);
+        val mscClient = mscClientProvider.getMscClient();
+        val endTime = TimeUtils.currentTimeMillis();
+        val startTime = endTime - TimeUnit.DAYS.toMillis(1);
+        mscRateBudget.acquire(true);
+        // the first item of the first page is the latest one
+        val page = mscCircuitBreaker.call(PROPERTIES_HISTORY_ENDPOINT, () -> mscClient.device()
+                        .getPropertiesHistory(String.valueOf(deviceId), startTime, endTime, 1L, null, null)
+                        .execute())
+                .body();
+        if (page != null && page.getData() != null && page.getData().getList() != null && !page.getData().getList().isEmpty()) {
+            val item = page.getData().getList().get(0);
+            val properties = mscClient.getObjectMapper().convertValue(item.getProperties(), JsonNode.class);
+            saveHistoryData(deviceKey, null, properties, item.getTs() == null ? endTime : item.getTs(), true);
+        }
+        if (isPolledByDispatcher(currentPollingTiers(), identifier)) {
+            // the rest of the history of a tiered device is polled next
+            pollingQueue.expedite(deviceId, identifier);
+        }
+    }
+
+    private boolean isWebhookLive() {
+        return mscWebhookService.isEnabled() && IntegrationStatus.READY.equals(mscIntegrationStatusManager.getWebhookStatus());
+    }
+
+    /**
+     * @return the last sync time in milliseconds, 0 if never synced
+     */
+    private long getLastSyncTime(long deviceId, String deviceKey) {
+        var lastSyncTime = mscDeviceSyncStates.getLastSyncTime(deviceId);
+        if (lastSyncTime == 0) {
+            // migrate the last sync time (in seconds) which was saved as an internal entity value
+            val lastSyncTimeKey = MscIntegrationConstants.InternalPropertyIdentifier.getLastSyncTimeKey(deviceKey);
+            lastSyncTime = Optional.ofNullable(entityValueServiceProvider.findValueByKey(lastSyncTimeKey))
+                    .filter(JsonNode::canConvertToLong)
+                    .map(node -> TimeUnit.SECONDS.toMillis(node.longValue()))
+                    .orElse(0L);
+        }
+        return lastSyncTime;
+    }
+
+    /**
+     * @return end of the fetched range in milliseconds
+     */
+    private long syncHistory(String deviceKey, long deviceId, long lastSyncTime, boolean priority, SyncSpan historySpan)
+            throws IOException, MscSdkException, InterruptedException {
         long endTime = TimeUtils.currentTimeMillis();
-        long pageSize = 100;
+        long time24HoursBefore = endTime - TimeUnit.DAYS.toMillis(1);
+        long startTime = Math.max(lastSyncTime, time24HoursBefore);
+        syncHistory(deviceKey, deviceId, startTime, endTime, true, priority, historySpan);
+        return endTime;
+    }
+
+    /**
+     * Fetch the history data of a time range which was missed by the webhook.
+     * Back-filled data is older than the data received by webhook, so it is only saved as history.
+     */
+    public void backfillHistory(long deviceId, long startTime, long endTime)
+            throws IOException, MscSdkException, InterruptedException {
+        if (mscClientProvider == null || mscClientProvider.getMscClient() == null) {
+            log.warn("MscClient not initiated.");
+            return;
+        }
+        val identifier = mscDeviceSyncStates.getIdentifier(deviceId);
+        if (identifier == null) {
+            return;
+        }
+        if (!mscDeviceSyncStates.markHistoryInFlight(deviceId)) {
+            // the running sync covers the range as well
+            log.info("Skip back-fill because history sync is running: {}", identifier);
+            return;
+        }
+        try {
+            log.info("Back-fill history data of device '{}' from {} to {}", identifier, startTime, endTime);
+            val deviceKey = IntegrationConstants.formatIntegrationDeviceKey(MscIntegrationConstants.INTEGRATION_IDENTIFIER, identifier);
+            syncHistory(deviceKey, deviceId, startTime, endTime, false, false, SyncSpan.detached());
+        } finally {
+            mscDeviceSyncStates.markHistoryFinished(deviceId);
+        }
+    }
+
+    /**
+     * Sync the properties history of a device page by page, every page takes a permit from the shared rate budget.
+     * The history of events and services is not synced yet, events missed by the webhook are not recovered.
+     *
+     * @param exchangeLatestData whether the latest item is exchanged as the current value
+     * @param priority           whether the pages take the priority lane of the rate budget
+     */
+    private void syncHistory(String deviceKey, long deviceId, long startTime, long endTime, boolean exchangeLatestData,
+                             boolean priority, SyncSpan historySpan)
+            throws IOException, MscSdkException, InterruptedException {
+        val mscClient = mscClientProvider.getMscClient();
+        val objectMapper = mscClient.getObjectMapper();
+        val deviceIdStr = String.valueOf(deviceId);
+        val fetchSpan = historySpan.child(PROPERTIES_HISTORY_ENDPOINT);
+        val saveSpan = historySpan.child("save_history");
+        var isLatestData = exchangeLatestData;
         String pageKey = null;
-        boolean hasNextPage = true;
-        val isLatestData = new AtomicBoolean(true);
-        while (hasNextPage) {
-            val page = mscClientProvider.getMscClient()
-                    .device()
-                    .getPropertiesHistory(deviceId, startTime, endTime, pageSize, pageKey, null)
-                    .execute()
+        do {
+            mscRateBudget.acquire(priority);
+            val fetchStartNanos = System.nanoTime();
+            val requestPageKey = pageKey;
+            val page = mscCircuitBreaker.call(PROPERTIES_HISTORY_ENDPOINT, () -> mscClient.device()
+                            .getPropertiesHistory(deviceIdStr, startTime, endTime, HISTORY_PAGE_SIZE, requestPageKey, null)
+                            .execute())
                     .body();
             if (page == null || page.getData() == null || page.getData().getList() == null) {
                 log.warn("Response is empty.");
                 break;
             }
+            val list = page.getData().getList();
+            mscMetrics.historyPageFetched(list.size());
+            fetchSpan.end(fetchStartNanos, list.size());
             pageKey = page.getData().getNextPageKey();
-            hasNextPage = pageKey != null;
-            page.getData().getList().forEach(item -> {
-                val objectMapper = mscClientProvider.getMscClient().getObjectMapper();
+
+            val saveStartNanos = System.nanoTime();
+            for (val item : list) {
                 val properties = objectMapper.convertValue(item.getProperties(), JsonNode.class);
-                saveHistoryData(device.getKey(), null, properties, item.getTs() == null ? TimeUtils.currentTimeMillis() : item.getTs(), isLatestData.get());
-                if (isLatestData.get()) {
-                    isLatestData.set(false);
-                }
-            });
-        }
+                saveHistoryData(deviceKey, null, properties, item.getTs() == null ? TimeUtils.currentTimeMillis() : item.getTs(), isLatestData);
+                isLatestData = false;
+            }
+            saveSpan.end(saveStartNanos, list.size());
+        } while (pageKey != null);
     }
 
     public void saveHistoryData(String deviceKey, String eventId, JsonNode data, long timestampMs, boolean isLatestData) {
+        if (data == null || data.isNull()) {
+            return;
+        }
         val payload = eventId == null
                 ? MscTslUtils.convertJsonNodeToExchangePayload(deviceKey, data)
                 : MscTslUtils.convertJsonNodeToExchangePayload(String.format("%s.%s", deviceKey, eventId), data, false);
+        saveHistoryData(payload, timestampMs, isLatestData);
+    }
+
+    public void saveHistoryData(@Nullable ExchangePayload payload, long timestampMs, boolean isLatestData) {
         if (payload == null || payload.isEmpty()) {
             return;
         }
@@ -384,49 +987,92 @@ public class MscDataSyncService {
     }
 
     @SneakyThrows
-    private Device updateLocalDevice(Task task) {
+    private Device updateLocalDevice(Task task, SyncSpan span) {
         log.info("Update local device: {}", task.identifier);
-        val details = getDeviceDetails(task);
+        val details = getDeviceDetails(task, span);
         val deviceId = details.getDeviceId();
-        val thingSpec = mscDeviceService.getThingSpec(String.valueOf(deviceId));
-        return mscDeviceService.updateLocalDevice(task.identifier, String.valueOf(deviceId), thingSpec);
+        val thingSpec = getThingSpec(String.valueOf(deviceId), span);
+        val fingerprint = getFingerprint(thingSpec);
+        if (fingerprint == mscDeviceSyncStates.getFingerprint(deviceId)) {
+            // the entities were generated from the same thing specification
+            val device = deviceServiceProvider.findByIdentifier(task.identifier, MscIntegrationConstants.INTEGRATION_IDENTIFIER);
+            if (device != null) {
+                log.debug("Thing specification of device '{}' unchanged", task.identifier);
+                return device;
+            }
+        }
+        val device = mscDeviceService.updateLocalDevice(task.identifier, String.valueOf(deviceId), thingSpec, span);
+        updateFingerprint(device, deviceId, task.identifier, fingerprint);
+        return device;
     }
 
     @SneakyThrows
-    private Device addLocalDevice(Task task) {
+    private Device addLocalDevice(Task task, SyncSpan span) {
         log.info("Add local device: {}", task.identifier);
-        val details = getDeviceDetails(task);
+        val details = getDeviceDetails(task, span);
         val deviceId = details.getDeviceId();
-        val thingSpec = mscDeviceService.getThingSpec(String.valueOf(deviceId));
-        return mscDeviceService.addLocalDevice(task.identifier, details.getName(), String.valueOf(deviceId), thingSpec);
+        val thingSpec = getThingSpec(String.valueOf(deviceId), span);
+        val device = mscDeviceService.addLocalDevice(task.identifier, details.getName(), String.valueOf(deviceId), thingSpec, span);
+        updateFingerprint(device, deviceId, task.identifier, getFingerprint(thingSpec));
+        return device;
+    }
+
+    private long getFingerprint(ThingSpec thingSpec) throws JsonProcessingException {
+        return MscDeviceSyncStates.fingerprint(mscClientProvider.getMscClient().getObjectMapper().writeValueAsString(thingSpec));
+    }
+
+    private void updateFingerprint(@Nullable Device device, long deviceId, String identifier, long fingerprint) {
+        if (device == null) {
+            return;
+        }
+        mscDeviceSyncStates.register(deviceId, identifier);
+        mscDeviceSyncStates.setFingerprint(deviceId, fingerprint);
+    }
+
+    private ThingSpec getThingSpec(String deviceId, SyncSpan span) throws IOException, MscSdkException {
+        val startNanos = System.nanoTime();
+        try {
+            return mscDeviceService.getThingSpec(deviceId);
+        } finally {
+            span.child("get_thing_specification").end(startNanos, 1);
+        }
     }
 
     @SuppressWarnings("ConstantConditions")
-    private DeviceDetailResponse getDeviceDetails(Task task)
-            throws IOException, NullPointerException, IndexOutOfBoundsException {
+    private DeviceDetailResponse getDeviceDetails(Task task, SyncSpan span)
+            throws IOException, MscSdkException, NullPointerException, IndexOutOfBoundsException {
 
         var details = task.details;
         if (details == null) {
-            details = mscClientProvider.getMscClient().device().searchDetails(DeviceSearchRequest.builder()
-                            .sn(task.identifier)
-                            .pageNumber(1L)
-                            .pageSize(1L)
-                            .build())
-                    .execute()
+            val startNanos = System.nanoTime();
+            details = mscCircuitBreaker.call("search_details", () -> mscClientProvider.getMscClient().device()
+                            .searchDetails(DeviceSearchRequest.builder()
+                                    .sn(task.identifier)
+                                    .pageNumber(1L)
+                                    .pageSize(1L)
+                                    .build())
+                            .execute())
                     .body()
                     .getData()
                     .getContent()
                     .get(0);
+            span.child("get_device_details").end(startNanos, 1);
         }
         return details;
     }
 
     private Device removeLocalDevice(String identifier) {
-        // delete is unsupported currently
-        return null;
+        val device = deviceServiceProvider.findByIdentifier(identifier, MscIntegrationConstants.INTEGRATION_IDENTIFIER);
+        orphanIdentifierToMissingSince.remove(identifier);
+        mscDeviceSyncStates.remove(identifier);
+        if (device == null) {
+            return null;
+        }
+        log.info("Remove local device which is deleted from MSC: {}", identifier);
+        deviceServiceProvider.deleteById(device.getId());
+        return device;
     }
 
-
     public record Task(@Nonnull Type type, @Nonnull String identifier, @Nullable DeviceDetailResponse details) {
 
         public enum Type {
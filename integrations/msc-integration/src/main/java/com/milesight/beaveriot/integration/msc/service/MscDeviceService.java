@@ -7,6 +7,7 @@ import com.milesight.cloud.sdk.client.model.ThingSpec;
 import com.milesight.cloud.sdk.client.model.TslPropertyDataUpdateRequest;
 import com.milesight.cloud.sdk.client.model.TslServiceCallRequest;
 import com.milesight.beaveriot.context.api.DeviceServiceProvider;
+import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
 import com.milesight.beaveriot.context.integration.model.DeviceBuilder;
 import com.milesight.beaveriot.context.integration.model.EntityBuilder;
 import com.milesight.beaveriot.context.integration.enums.AccessMod;
@@ -18,7 +19,10 @@ import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
 import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
 import com.milesight.beaveriot.eventbus.api.Event;
+import com.milesight.beaveriot.integration.msc.entity.MscDownlinkEntities;
 import com.milesight.beaveriot.integration.msc.entity.MscServiceEntities;
+import com.milesight.beaveriot.integration.msc.model.SyncSpan;
+import com.milesight.beaveriot.integration.msc.util.MscEntityDiffUtils;
 import com.milesight.beaveriot.integration.msc.util.MscTslUtils;
 import com.milesight.msc.sdk.error.MscApiException;
 import com.milesight.msc.sdk.error.MscSdkException;
@@ -30,15 +34,51 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @Slf4j
 @Service
 public class MscDeviceService {
 
+    private static final long DOWNLINK_TIMEOUT_SECONDS = 10;
+
+    private static final int MAX_REPORTED_FAILED_DEVICES = 100;
+
+    /**
+     * Downlinks sent to MSC at the same time, the others wait in {@link #pendingDownlinks}.
+     * A downlink holds its permit until it finishes or times out, whichever comes first.
+     */
+    private static final int MAX_IN_FLIGHT_DOWNLINKS = 32;
+
+    private final Semaphore inFlightDownlinks = new Semaphore(MAX_IN_FLIGHT_DOWNLINKS);
+
+    private final ConcurrentLinkedQueue<Downlink> pendingDownlinks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger drainRequests = new AtomicInteger(0);
+
+    /**
+     * Threads are created on demand, so a call which is still blocked after its timeout doesn't hold back the next downlinks
+     */
+    private volatile ExecutorService downlinkExecutor;
+
     @Lazy
     @Autowired
     private IMscClientProvider mscClientProvider;
@@ -46,66 +86,256 @@ public class MscDeviceService {
     @Autowired
     private DeviceServiceProvider deviceServiceProvider;
 
-    @SneakyThrows
+    @Autowired
+    private MscCircuitBreaker mscCircuitBreaker;
+
+    @Autowired
+    private ExchangeFlowExecutor exchangeFlowExecutor;
+
+    @Autowired
+    private MscDeviceSyncStates mscDeviceSyncStates;
+
+    public synchronized void start() {
+        if (downlinkExecutor != null) {
+            return;
+        }
+        downlinkExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            val thread = new Thread(r, "msc-downlink");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop sending downlinks, the running ones are interrupted and the pending ones are reported as failed.
+     */
+    public synchronized void stop() {
+        if (downlinkExecutor != null) {
+            downlinkExecutor.shutdownNow();
+            downlinkExecutor = null;
+        }
+        drainDownlinks();
+    }
+
+    /**
+     * Split the payload by device and send the downlinks to MSC concurrently without blocking the event thread.
+     * The result of all devices is published to the {@link MscDownlinkEntities} when they are finished.
+     */
     @EventSubscribe(payloadKeyExpression = "msc-integration.device.*", eventType = ExchangeEvent.EventType.DOWN)
     public void onDeviceExchangeEvent(ExchangeEvent event) {
+        if (mscClientProvider == null || mscClientProvider.getMscClient() == null) {
+            log.warn("MscClient not initiated.");
+            return;
+        }
         val exchangePayload = event.getPayload();
-        val devices = exchangePayload.getExchangeEntities()
-                .values()
-                .stream()
-                .map(Entity::getDeviceKey)
-                .distinct()
-                .map(deviceServiceProvider::findByKey)
-                .filter(Objects::nonNull)
-                .toList();
-        if (devices.size() != 1) {
-            log.warn("Invalid device number: {}", devices.size());
+        val exchangeEntities = exchangePayload.getExchangeEntities();
+        val deviceKeyToProperties = groupByDeviceKey(exchangeEntities, exchangePayload.getPayloadsByEntityType(EntityType.PROPERTY));
+        val deviceKeyToServices = groupByDeviceKey(exchangeEntities, exchangePayload.getPayloadsByEntityType(EntityType.SERVICE));
+        val deviceKeys = new LinkedHashSet<String>(deviceKeyToProperties.keySet());
+        deviceKeys.addAll(deviceKeyToServices.keySet());
+        if (deviceKeys.isEmpty()) {
+            return;
+        }
+
+        val startTime = System.currentTimeMillis();
+        val deviceKeyToResult = new LinkedHashMap<String, CompletableFuture<Void>>(deviceKeys.size() * 4 / 3 + 1);
+        deviceKeys.forEach(deviceKey -> deviceKeyToResult.put(deviceKey, dispatchDownlink(deviceKey,
+                deviceKeyToProperties.getOrDefault(deviceKey, Map.of()),
+                deviceKeyToServices.getOrDefault(deviceKey, Map.of()))));
+        CompletableFuture.allOf(deviceKeyToResult.values().toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, e) -> publishDownlinkResult(deviceKeyToResult, startTime));
+    }
+
+    private static Map<String, Map<String, Object>> groupByDeviceKey(Map<String, Entity> exchangeEntities, Map<String, Object> keyValues) {
+        val result = new HashMap<String, Map<String, Object>>();
+        keyValues.forEach((key, value) -> {
+            val entity = exchangeEntities.get(key);
+            if (entity == null || entity.getDeviceKey() == null) {
+                log.debug("Ignored key without device: {}", key);
+                return;
+            }
+            result.computeIfAbsent(entity.getDeviceKey(), k -> new HashMap<>()).put(key, value);
+        });
+        return result;
+    }
+
+    private CompletableFuture<Void> dispatchDownlink(String deviceKey, Map<String, Object> propertiesPayload, Map<String, Object> servicePayload) {
+        val downlink = new Downlink(deviceKey, propertiesPayload, servicePayload, new CompletableFuture<>());
+        pendingDownlinks.add(downlink);
+        drainDownlinks();
+        return downlink.result();
+    }
+
+    /**
+     * Start the pending downlinks while there are free permits, or fail them all if the service is stopped.
+     */
+    private void drainDownlinks() {
+        // a drain requested while another one is running is done by that one, so a fast downlink doesn't recurse
+        if (drainRequests.getAndIncrement() != 0) {
             return;
         }
-        val device = devices.get(0);
+        var missed = 1;
+        do {
+            drainPendingDownlinks();
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
 
-        handlePropertiesPayload(device, exchangePayload);
-        handleServicePayload(device, exchangePayload);
+    private void drainPendingDownlinks() {
+        while (!pendingDownlinks.isEmpty()) {
+            val executor = downlinkExecutor;
+            if (executor == null) {
+                val downlink = pendingDownlinks.poll();
+                if (downlink != null) {
+                    downlink.result().completeExceptionally(new RejectedExecutionException("Downlink stopped"));
+                }
+                continue;
+            }
+            if (!inFlightDownlinks.tryAcquire()) {
+                // started by the downlink releasing the next permit
+                return;
+            }
+            val downlink = pendingDownlinks.poll();
+            if (downlink == null) {
+                inFlightDownlinks.release();
+                return;
+            }
+            startDownlink(executor, downlink);
+        }
     }
 
-    private void handleServicePayload(Device device, ExchangePayload exchangePayload) {
-        val objectMapper = mscClientProvider.getMscClient().getObjectMapper();
-        val servicePayload = exchangePayload.getPayloadsByEntityType(EntityType.SERVICE);
+    private void startDownlink(ExecutorService executor, Downlink downlink) {
+        val released = new AtomicBoolean(false);
+        final Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                inFlightDownlinks.release();
+                drainDownlinks();
+            }
+        };
+        try {
+            val task = executor.submit(() -> runDownlink(downlink));
+            // the timeout starts when the downlink starts rather than when it is queued
+            downlink.result().orTimeout(DOWNLINK_TIMEOUT_SECONDS, TimeUnit.SECONDS).whenComplete((ignored, e) -> {
+                if (e instanceof TimeoutException) {
+                    // interrupt the blocked call, its permit is released anyway
+                    task.cancel(true);
+                }
+                release.run();
+            });
+        } catch (RejectedExecutionException e) {
+            downlink.result().completeExceptionally(e);
+            release.run();
+        }
+    }
+
+    private void runDownlink(Downlink downlink) {
+        val deviceKey = downlink.deviceKey();
+        val result = downlink.result();
+        try {
+            val device = deviceServiceProvider.findByKey(deviceKey);
+            if (device == null) {
+                throw new NoSuchElementException("Device not found");
+            }
+            handlePropertiesPayload(device, downlink.propertiesPayload());
+            handleServicePayload(device, downlink.servicePayload());
+            result.complete(null);
+        } catch (Exception e) {
+            if (!result.isDone()) {
+                log.warn("Downlink to device '{}' failed: {}", deviceKey, e.getMessage());
+            }
+            result.completeExceptionally(e);
+        }
+    }
+
+    private record Downlink(String deviceKey, Map<String, Object> propertiesPayload, Map<String, Object> servicePayload,
+                            CompletableFuture<Void> result) {
+    }
+
+    private void publishDownlinkResult(Map<String, CompletableFuture<Void>> deviceKeyToResult, long startTime) {
+        try {
+            val finishTime = System.currentTimeMillis();
+            val failedDevices = new LinkedHashMap<String, String>();
+            var failed = 0L;
+            for (val entry : deviceKeyToResult.entrySet()) {
+                val error = entry.getValue().handle((ignored, e) -> e).join();
+                if (error == null) {
+                    continue;
+                }
+                failed++;
+                if (failedDevices.size() < MAX_REPORTED_FAILED_DEVICES) {
+                    failedDevices.put(entry.getKey(), toFailureReason(error));
+                }
+            }
+            val succeeded = deviceKeyToResult.size() - failed;
+            log.info("Downlink to {} devices finished in {} ms, succeeded: {}, failed: {}",
+                    deviceKeyToResult.size(), finishTime - startTime, succeeded, failed);
+
+            val values = new HashMap<String, Object>();
+            values.put(MscDownlinkEntities.getKey(MscDownlinkEntities.LastDownlink.Fields.succeeded), succeeded);
+            values.put(MscDownlinkEntities.getKey(MscDownlinkEntities.LastDownlink.Fields.failed), failed);
+            values.put(MscDownlinkEntities.getKey(MscDownlinkEntities.LastDownlink.Fields.failedDevices),
+                    mscClientProvider.getMscClient().getObjectMapper().writeValueAsString(failedDevices));
+            values.put(MscDownlinkEntities.getKey(MscDownlinkEntities.LastDownlink.Fields.duration), finishTime - startTime);
+            values.put(MscDownlinkEntities.getKey(MscDownlinkEntities.LastDownlink.Fields.finishTime), finishTime);
+            exchangeFlowExecutor.asyncExchangeUp(ExchangePayload.create(values));
+        } catch (Exception e) {
+            log.warn("Publish downlink result failed", e);
+        }
+    }
+
+    private static String toFailureReason(Throwable error) {
+        val cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return "rejected";
+        }
+        if (cause instanceof MscApiException apiException
+                && apiException.getErrorResponse() != null
+                && apiException.getErrorResponse().getErrCode() != null) {
+            return apiException.getErrorResponse().getErrCode();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private void handleServicePayload(Device device, Map<String, Object> servicePayload) throws IOException, MscSdkException {
         if (servicePayload.isEmpty()) {
             return;
         }
+        val mscClient = mscClientProvider.getMscClient();
         val deviceId = (String) device.getAdditional().get(MscIntegrationConstants.DeviceAdditionalDataName.DEVICE_ID);
         val serviceGroups = MscTslUtils.convertExchangePayloadMapToGroupedJsonNode(
-                objectMapper, device.getKey(), servicePayload);
+                mscClient.getObjectMapper(), device.getKey(), servicePayload);
         serviceGroups.entrySet().removeIf(entry -> MscIntegrationConstants.InternalPropertyIdentifier.Pattern.match(entry.getKey()));
-        if (serviceGroups.isEmpty()) {
-            return;
+        for (val serviceGroup : serviceGroups.entrySet()) {
+            mscCircuitBreaker.call("call_service", () -> mscClient.device()
+                    .callService(deviceId, TslServiceCallRequest.builder()
+                            .serviceId(serviceGroup.getKey())
+                            .inputs(serviceGroup.getValue())
+                            .build())
+                    .execute());
         }
-        serviceGroups.forEach((serviceId, serviceProperties) ->
-                mscClientProvider.getMscClient().device().callService(deviceId, TslServiceCallRequest.builder()
-                        .serviceId(serviceId)
-                        .inputs(serviceProperties)
-                        .build()));
     }
 
-    @SneakyThrows
-    private void handlePropertiesPayload(Device device, ExchangePayload exchangePayload) {
-        val objectMapper = mscClientProvider.getMscClient().getObjectMapper();
-        val propertiesPayload = exchangePayload.getPayloadsByEntityType(EntityType.PROPERTY);
+    private void handlePropertiesPayload(Device device, Map<String, Object> propertiesPayload) throws IOException, MscSdkException {
         if (propertiesPayload.isEmpty()) {
             return;
         }
+        val mscClient = mscClientProvider.getMscClient();
         val properties = MscTslUtils.convertExchangePayloadMapToGroupedJsonNode(
-                objectMapper, device.getKey(), propertiesPayload);
+                mscClient.getObjectMapper(), device.getKey(), propertiesPayload);
         properties.entrySet().removeIf(entry -> MscIntegrationConstants.InternalPropertyIdentifier.Pattern.match(entry.getKey()));
         if (properties.isEmpty()) {
             return;
         }
         val deviceId = (String) device.getAdditional().get(MscIntegrationConstants.DeviceAdditionalDataName.DEVICE_ID);
-        mscClientProvider.getMscClient().device().updateProperties(deviceId, TslPropertyDataUpdateRequest.builder()
+        mscCircuitBreaker.call("update_properties", () -> mscClient.device()
+                .updateProperties(deviceId, TslPropertyDataUpdateRequest.builder()
                         .properties(properties)
                         .build())
-                .execute();
+                .execute());
     }
 
     @SneakyThrows
@@ -118,12 +348,13 @@ public class MscDeviceService {
         }
         val identifier = event.getPayload().getSn();
         val mscClient = mscClientProvider.getMscClient();
-        val addDeviceResponse = mscClient.device().attach(DeviceSaveOrUpdateRequest.builder()
-                        .name(deviceName)
-                        .snDevEUI(identifier)
-                        .autoProvision(false)
-                        .build())
-                .execute()
+        val addDeviceResponse = mscCircuitBreaker.call("attach", () -> mscClient.device()
+                        .attach(DeviceSaveOrUpdateRequest.builder()
+                                .name(deviceName)
+                                .snDevEUI(identifier)
+                                .autoProvision(false)
+                                .build())
+                        .execute())
                 .body();
         if (addDeviceResponse == null || addDeviceResponse.getData() == null
                 || addDeviceResponse.getData().getDeviceId() == null) {
@@ -141,10 +372,16 @@ public class MscDeviceService {
     }
 
     public Device addLocalDevice(String identifier, String deviceName, String deviceId, ThingSpec thingSpec) {
+        return addLocalDevice(identifier, deviceName, deviceId, thingSpec, SyncSpan.detached());
+    }
+
+    /**
+     * @param span span of the sync task, thing specification conversion and device saving are recorded as its children
+     */
+    public Device addLocalDevice(String identifier, String deviceName, String deviceId, ThingSpec thingSpec, SyncSpan span) {
         val integrationId = MscIntegrationConstants.INTEGRATION_IDENTIFIER;
         val deviceKey = IntegrationConstants.formatIntegrationDeviceKey(integrationId, identifier);
-        val entities = MscTslUtils.thingSpecificationToEntities(integrationId, deviceKey, thingSpec);
-        addAdditionalEntities(integrationId, deviceKey, entities);
+        val entities = convertThingSpec(integrationId, deviceKey, thingSpec, span);
 
         val device = new DeviceBuilder(integrationId)
                 .name(deviceName)
@@ -152,32 +389,62 @@ public class MscDeviceService {
                 .additional(Map.of(MscIntegrationConstants.DeviceAdditionalDataName.DEVICE_ID, deviceId))
                 .entities(entities)
                 .build();
-        deviceServiceProvider.save(device);
+        saveDevice(device, span);
         return device;
     }
 
     public Device updateLocalDevice(String identifier, String deviceId, ThingSpec thingSpec) {
+        return updateLocalDevice(identifier, deviceId, thingSpec, SyncSpan.detached());
+    }
+
+    /**
+     * Update the entities of the local device, it's only saved when its entities or MSC device id changed.
+     */
+    public Device updateLocalDevice(String identifier, String deviceId, ThingSpec thingSpec, SyncSpan span) {
         val integrationId = MscIntegrationConstants.INTEGRATION_IDENTIFIER;
         val deviceKey = IntegrationConstants.formatIntegrationDeviceKey(integrationId, identifier);
-        val entities = MscTslUtils.thingSpecificationToEntities(integrationId, deviceKey, thingSpec);
-        addAdditionalEntities(integrationId, deviceKey, entities);
+        val entities = convertThingSpec(integrationId, deviceKey, thingSpec, span);
 
         val device = deviceServiceProvider.findByIdentifier(identifier, integrationId);
+        val diff = MscEntityDiffUtils.diff(device.getEntities(), entities);
+        val existingDeviceId = device.getAdditional() == null
+                ? null
+                : device.getAdditional().get(MscIntegrationConstants.DeviceAdditionalDataName.DEVICE_ID);
+        if (diff.isEmpty() && existingDeviceId != null && deviceId.equals(existingDeviceId.toString())) {
+            log.debug("Device '{}' unchanged", identifier);
+            return device;
+        }
+        log.debug("Device '{}' changed, added: {}, removed: {}, changed: {}",
+                identifier, diff.addedKeys(), diff.removedKeys(), diff.changedKeys());
         // update device attributes except name
 //        device.setIdentifier(identifier);
         device.setAdditional(Map.of(MscIntegrationConstants.DeviceAdditionalDataName.DEVICE_ID, deviceId));
-        device.setEntities(entities);
-        deviceServiceProvider.save(device);
+        device.setEntities(diff.merged());
+        saveDevice(device, span);
         return device;
     }
 
+    private static List<Entity> convertThingSpec(String integrationId, String deviceKey, ThingSpec thingSpec, SyncSpan span) {
+        val startNanos = System.nanoTime();
+        val entities = MscTslUtils.thingSpecificationToEntities(integrationId, deviceKey, thingSpec);
+        addAdditionalEntities(integrationId, deviceKey, entities);
+        span.child("convert_thing_spec").end(startNanos, entities.size());
+        return entities;
+    }
+
+    private void saveDevice(Device device, SyncSpan span) {
+        val startNanos = System.nanoTime();
+        deviceServiceProvider.save(device);
+        span.child("save_device").end(startNanos, 1);
+    }
+
     @Nullable
     public ThingSpec getThingSpec(String deviceId) throws IOException, MscSdkException {
         val mscClient = mscClientProvider.getMscClient();
         ThingSpec thingSpec = null;
-        val response = mscClient.device()
-                .getThingSpecification(deviceId)
-                .execute()
+        val response = mscCircuitBreaker.call("get_thing_specification", () -> mscClient.device()
+                        .getThingSpecification(deviceId)
+                        .execute())
                 .body();
         if (response != null && response.getData() != null) {
             thingSpec = response.getData();
@@ -212,8 +479,9 @@ public class MscDeviceService {
             return;
         }
         try {
-            mscClientProvider.getMscClient().device().delete(deviceId.toString())
-                    .execute();
+            mscCircuitBreaker.call("delete", () -> mscClientProvider.getMscClient().device()
+                    .delete(deviceId.toString())
+                    .execute());
         } catch (MscApiException e) {
             if (!"device_not_found".equals(e.getErrorResponse().getErrCode())) {
                 throw e;
@@ -222,6 +490,7 @@ public class MscDeviceService {
             }
         }
         deviceServiceProvider.deleteById(device.getId());
+        mscDeviceSyncStates.remove(device.getIdentifier());
     }
 
 }
@@ -0,0 +1,287 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import com.milesight.beaveriot.integration.msc.constant.MscIntegrationConstants;
+import com.milesight.beaveriot.integration.msc.model.DeviceSyncStateTable;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sync state of each device, keyed by the MSC device id, persisted to a local file.
+ * <p>
+ * The file is a snapshot written periodically and on shutdown, it's loaded at startup so the identifier index,
+ * thing specification fingerprints and history cursors are warm before the first sync.
+ */
+@Slf4j
+@Component
+public class MscDeviceSyncStates {
+
+    /**
+     * Intervals shorter than this are never treated as a gap
+     */
+    private static final long MIN_GAP_MILLIS = 5 * 60 * 1000L;
+
+    /**
+     * An interval longer than this many times the mean interval breaks the cadence
+     */
+    private static final double GAP_FACTOR = 3;
+
+    /**
+     * Number of intervals needed before the mean interval is trusted
+     */
+    private static final int MIN_INTERVAL_SAMPLES = 3;
+
+    private static final double INTERVAL_SMOOTHING = 0.2;
+
+    private static final long SNAPSHOT_PERIOD_SECONDS = 60;
+
+    /**
+     * Marks the fields written after the table, files written by older versions end with the table
+     */
+    private static final int TRAILER_MAGIC = 0x4d534354;
+
+    private final DeviceSyncStateTable table = new DeviceSyncStateTable(1024);
+
+    private final Path file;
+
+    private volatile boolean modified = false;
+
+    /**
+     * Finish time (ms) of the last complete device listing from MSC
+     */
+    @Getter
+    private volatile long lastDeviceListingTime = 0;
+
+    private ScheduledExecutorService snapshotWriter;
+
+    public MscDeviceSyncStates() {
+        this(MscIntegrationConstants.LocalStorage.getDataDirectory()
+                .resolve(MscIntegrationConstants.LocalStorage.DEVICE_SYNC_STATES_FILE));
+    }
+
+    public MscDeviceSyncStates(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Add the device if absent, and keep its identifier up to date.
+     */
+    public void register(long deviceId, String identifier) {
+        table.register(deviceId, identifier);
+        modified = true;
+    }
+
+    /**
+     * @return identifier of the device, null if unknown
+     */
+    public String getIdentifier(long deviceId) {
+        return table.getIdentifier(deviceId);
+    }
+
+    /**
+     * @return device id of the identifier, 0 if unknown
+     */
+    public long findDeviceId(String identifier) {
+        return table.findDeviceId(identifier);
+    }
+
+    /**
+     * Record webhook data of a device and check the event cadence.
+     *
+     * @param eventCreatedAtMillis creation time of the event in MSC
+     * @return creation time (ms) of the previous event if there is a gap before this event, otherwise -1
+     */
+    public long markWebhookReceived(long deviceId, String identifier, long receivedAtMillis, long eventCreatedAtMillis) {
+        table.register(deviceId, identifier);
+        modified = true;
+        return table.markWebhookReceived(deviceId, receivedAtMillis, eventCreatedAtMillis,
+                MIN_GAP_MILLIS, GAP_FACTOR, MIN_INTERVAL_SAMPLES, INTERVAL_SMOOTHING);
+    }
+
+    /**
+     * @return creation time (ms) in MSC of the last event of the device received by webhook, 0 if never
+     */
+    public long getLastEventCreatedAt(long deviceId) {
+        return table.getLastEventCreatedTime(deviceId);
+    }
+
+    /**
+     * @param consumer accepts the device id, the identifier and the creation time (ms) of the last event received by webhook
+     */
+    public void forEachLastEventCreatedAt(DeviceSyncStateTable.LastEventConsumer consumer) {
+        table.forEachLastEventCreatedTime(consumer);
+    }
+
+    /**
+     * @return end time (ms) of the last history sync, 0 if never
+     */
+    public long getLastSyncTime(long deviceId) {
+        return table.getLastSyncTime(deviceId);
+    }
+
+    /**
+     * Ignored if the device is unknown, e.g. removed while it's being synced.
+     */
+    public void setLastSyncTime(long deviceId, long timeMillis) {
+        table.setLastSyncTime(deviceId, timeMillis);
+        modified = true;
+    }
+
+    /**
+     * @return fingerprint of the thing specification last applied to the local device, 0 if unknown
+     */
+    public long getFingerprint(long deviceId) {
+        return table.getFingerprint(deviceId);
+    }
+
+    public void setFingerprint(long deviceId, long fingerprint) {
+        table.setFingerprint(deviceId, fingerprint);
+        modified = true;
+    }
+
+    public void setLastDeviceListingTime(long timeMillis) {
+        lastDeviceListingTime = timeMillis;
+        modified = true;
+    }
+
+    /**
+     * @param consumer accepts the device id and the identifier of every known device
+     */
+    public void forEachDevice(DeviceSyncStateTable.DeviceConsumer consumer) {
+        table.forEachDevice(consumer);
+    }
+
+    /**
+     * @return false if the history of the device is already being synced or the device is removed
+     */
+    public boolean markHistoryInFlight(long deviceId) {
+        return table.setFlag(deviceId, DeviceSyncStateTable.FLAG_IN_FLIGHT);
+    }
+
+    public void markHistoryFinished(long deviceId) {
+        table.clearFlag(deviceId, DeviceSyncStateTable.FLAG_IN_FLIGHT);
+    }
+
+    public void remove(long deviceId) {
+        table.remove(deviceId);
+        modified = true;
+    }
+
+    public void remove(String identifier) {
+        val deviceId = table.findDeviceId(identifier);
+        if (deviceId != 0) {
+            table.remove(deviceId);
+            modified = true;
+        }
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Restore the states saved by the last run, a missing or broken file only means starting from scratch.
+     */
+    public void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (val in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            table.readFrom(in);
+            try {
+                if (in.readInt() == TRAILER_MAGIC) {
+                    lastDeviceListingTime = in.readLong();
+                }
+            } catch (EOFException e) {
+                // written by an older version
+            }
+            log.info("Loaded sync states of {} devices from {}, last device listing: {}", table.size(), file, lastDeviceListingTime);
+        } catch (IOException e) {
+            log.warn("Failed to load device sync states from {}", file, e);
+        }
+    }
+
+    /**
+     * Write the states to a temporary file then replace the old file, so a crash never leaves a partial file.
+     */
+    public synchronized void save() {
+        // changes made while writing are saved next time
+        modified = false;
+        try {
+            Files.createDirectories(file.getParent());
+            val tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (val out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                table.writeTo(out);
+                out.writeInt(TRAILER_MAGIC);
+                out.writeLong(lastDeviceListingTime);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved sync states of {} devices to {}", table.size(), file);
+        } catch (IOException e) {
+            modified = true;
+            log.warn("Failed to save device sync states to {}", file, e);
+        }
+    }
+
+    public void saveIfModified() {
+        if (modified) {
+            save();
+        }
+    }
+
+    /**
+     * Start writing the snapshot periodically.
+     */
+    public synchronized void start() {
+        if (snapshotWriter != null) {
+            return;
+        }
+        snapshotWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "msc-sync-states-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotWriter.scheduleWithFixedDelay(this::saveIfModified, SNAPSHOT_PERIOD_SECONDS, SNAPSHOT_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop writing periodically and write the last snapshot.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (snapshotWriter != null) {
+                snapshotWriter.shutdown();
+                snapshotWriter = null;
+            }
+        }
+        save();
+    }
+
+    /**
+     * 64-bit FNV-1a of the text, e.g. a serialized thing specification.
+     */
+    public static long fingerprint(String text) {
+        var h = 0xcbf29ce484222325L;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        // 0 means unknown
+        return h == 0 ? 1 : h;
+    }
+
+}
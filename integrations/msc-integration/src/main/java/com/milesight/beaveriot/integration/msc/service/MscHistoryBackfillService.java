@@ -0,0 +1,89 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Back-fills the history data missed by the webhook, only for the affected devices and time ranges.
+ * <p>
+ * Requests are collected for a short delay, so the ranges requested for one device while the webhook recovers are merged into one fetch.
+ */
+@Slf4j
+@Service
+public class MscHistoryBackfillService {
+
+    private static final long BACKFILL_DELAY_SECONDS = 30;
+
+    private static final long MAX_BACKFILL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final ConcurrentHashMap<Long, long[]> deviceIdToPendingRange = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        val thread = new Thread(r, "msc-history-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Lazy
+    @Autowired
+    private MscDataSyncService dataSyncService;
+
+    @Autowired
+    private MscDeviceSyncStates mscDeviceSyncStates;
+
+    /**
+     * @param startTime start of the missed range in milliseconds
+     * @param endTime   end of the missed range in milliseconds
+     */
+    public void requestBackfill(long deviceId, long startTime, long endTime) {
+        val start = Math.max(startTime, endTime - MAX_BACKFILL_MILLIS);
+        if (start >= endTime) {
+            return;
+        }
+        deviceIdToPendingRange.merge(deviceId, new long[]{start, endTime},
+                (previous, range) -> new long[]{Math.min(previous[0], range[0]), Math.max(previous[1], range[1])});
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::runPendingBackfills, BACKFILL_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Request back-fill for every device heard by webhook, from its last event until now.
+     */
+    public void onWebhookRecovered() {
+        val now = System.currentTimeMillis();
+        mscDeviceSyncStates.forEachLastEventCreatedAt((deviceId, identifier, lastEventCreatedAt) ->
+                requestBackfill(deviceId, lastEventCreatedAt, now));
+        log.info("Webhook recovered, history back-fill requested for {} devices", deviceIdToPendingRange.size());
+    }
+
+    private void runPendingBackfills() {
+        scheduled.set(false);
+        for (val deviceId : deviceIdToPendingRange.keySet()) {
+            val range = deviceIdToPendingRange.remove(deviceId);
+            if (range == null) {
+                continue;
+            }
+            try {
+                dataSyncService.backfillHistory(deviceId, range[0], range[1]);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Back-fill history data failed, device id: {}", deviceId, e);
+            }
+        }
+    }
+
+}
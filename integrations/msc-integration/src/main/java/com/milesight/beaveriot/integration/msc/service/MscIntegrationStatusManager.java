@@ -0,0 +1,157 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.integration.msc.entity.MscConnectionPropertiesEntities;
+import com.milesight.beaveriot.integration.msc.model.IntegrationStatus;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the openapi and webhook status of the integration in memory, the single source of both status.
+ * <p>
+ * A status entity is only published when the status changes. When it changes again within the debounce window
+ * of the last publication, the latest status is published at the end of the window, so a flapping status
+ * is published at most once per window.
+ */
+@Slf4j
+@Component
+public class MscIntegrationStatusManager {
+
+    private static final long DEBOUNCE_MILLIS = 1000;
+
+    private final StatusEntity openapi = new StatusEntity(
+            MscConnectionPropertiesEntities.getKey(MscConnectionPropertiesEntities.Fields.openapiStatus), true);
+
+    private final StatusEntity webhook = new StatusEntity(
+            MscConnectionPropertiesEntities.getKey(MscConnectionPropertiesEntities.Fields.webhookStatus), false);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        val thread = new Thread(r, "msc-status-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long debounceMillis = DEBOUNCE_MILLIS;
+
+    @Autowired
+    private ExchangeFlowExecutor exchangeFlowExecutor;
+
+    /**
+     * @return the current openapi status, null if not reported yet
+     */
+    @Nullable
+    public IntegrationStatus getOpenapiStatus() {
+        return openapi.current;
+    }
+
+    /**
+     * @return the current webhook status, null if not reported yet
+     */
+    @Nullable
+    public IntegrationStatus getWebhookStatus() {
+        return webhook.current;
+    }
+
+    /**
+     * @return the previous status, null if not reported yet
+     */
+    @Nullable
+    public IntegrationStatus updateOpenapiStatus(@NonNull IntegrationStatus status) {
+        return update(openapi, status);
+    }
+
+    /**
+     * @return the previous status, null if not reported yet
+     */
+    @Nullable
+    public IntegrationStatus updateWebhookStatus(@NonNull IntegrationStatus status) {
+        return update(webhook, status);
+    }
+
+    private IntegrationStatus update(StatusEntity entity, IntegrationStatus status) {
+        // fast path, the webhook status is reported by every event
+        if (entity.current == status) {
+            return status;
+        }
+        final IntegrationStatus previous;
+        synchronized (entity) {
+            previous = entity.current;
+            if (previous == status) {
+                return previous;
+            }
+            entity.current = status;
+            if (entity.publishScheduled) {
+                return previous;
+            }
+            val now = System.currentTimeMillis();
+            val delay = entity.lastPublishedAt + debounceMillis - now;
+            if (delay > 0) {
+                entity.publishScheduled = true;
+                scheduler.schedule(() -> publishLatest(entity), delay, TimeUnit.MILLISECONDS);
+                return previous;
+            }
+            entity.published = status;
+            entity.lastPublishedAt = now;
+        }
+        publish(entity, status);
+        return previous;
+    }
+
+    private void publishLatest(StatusEntity entity) {
+        final IntegrationStatus status;
+        synchronized (entity) {
+            entity.publishScheduled = false;
+            status = entity.current;
+            if (status == entity.published) {
+                // flapped back to the published status
+                return;
+            }
+            entity.published = status;
+            entity.lastPublishedAt = System.currentTimeMillis();
+        }
+        publish(entity, status);
+    }
+
+    private void publish(StatusEntity entity, IntegrationStatus status) {
+        log.debug("Publish status: {} {}", entity.key, status);
+        try {
+            val payload = ExchangePayload.create(entity.key, status.name());
+            if (entity.down) {
+                exchangeFlowExecutor.syncExchangeDown(payload);
+            } else {
+                exchangeFlowExecutor.asyncExchangeUp(payload);
+            }
+        } catch (Exception e) {
+            log.error("Publish status failed: {} {}", entity.key, status, e);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class StatusEntity {
+
+        private final String key;
+
+        /**
+         * Whether the status is published downward, so the services subscribing to it are notified
+         */
+        private final boolean down;
+
+        private volatile IntegrationStatus current;
+
+        private IntegrationStatus published;
+
+        private long lastPublishedAt;
+
+        private boolean publishScheduled;
+
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.integration.msc.entity.MscSyncHealthEntities;
+import com.milesight.msc.sdk.error.MscApiException;
+import com.milesight.msc.sdk.error.MscSdkException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer metrics of the MSC integration.
+ * <p>
+ * Meters are registered to the application's registry when there is one, otherwise to a local simple registry.
+ * A summary is mirrored periodically into the read-only {@link MscSyncHealthEntities}.
+ */
+@Slf4j
+@Component
+public class MscMetrics {
+
+    private static final String CLIENT_REQUESTS = "msc.client.requests";
+
+    private static final String WEBHOOK_PAYLOADS = "msc.webhook.payloads";
+
+    private static final long PUBLISH_PERIOD_SECONDS = 60;
+
+    @Getter
+    private final MeterRegistry registry;
+
+    @Autowired
+    private ExchangeFlowExecutor exchangeFlowExecutor;
+
+    private final DistributionSummary historyRecordsPerPage;
+
+    private final AtomicLong lastSyncDuration = new AtomicLong();
+
+    private final AtomicLong lastSyncTime = new AtomicLong();
+
+    private final AtomicLong startupDuration = new AtomicLong();
+
+    private Supplier<Number> inFlightDeviceTasks = () -> 0;
+
+    private ScheduledExecutorService publisher;
+
+    private ScheduledFuture<?> publishTask;
+
+    @Autowired
+    public MscMetrics(ObjectProvider<MeterRegistry> registryProvider) {
+        this(registryProvider.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    public MscMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.historyRecordsPerPage = DistributionSummary.builder("msc.sync.history.records_per_page")
+                .description("History records returned by one getPropertiesHistory page")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @FunctionalInterface
+    public interface MscCall<T> {
+        T execute() throws IOException, MscSdkException;
+    }
+
+    /**
+     * Execute a MSC OpenAPI call and record its duration, tagged by endpoint and status.
+     */
+    public <T> T timeCall(String endpoint, MscCall<T> call) throws IOException, MscSdkException {
+        val startNanos = System.nanoTime();
+        Exception error = null;
+        try {
+            return call.execute();
+        } catch (IOException | MscSdkException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            recordCall(endpoint, startNanos, error);
+        }
+    }
+
+    /**
+     * Record a MSC OpenAPI call which can't be wrapped by {@link #timeCall}.
+     *
+     * @param error the failure of the call, null if succeeded
+     */
+    public void recordCall(String endpoint, long startNanos, @Nullable Exception error) {
+        Timer.builder(CLIENT_REQUESTS)
+                .tag("endpoint", endpoint)
+                .tag("status", toStatus(error))
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String toStatus(@Nullable Exception error) {
+        if (error == null) {
+            return "success";
+        }
+        if (error instanceof MscApiException apiException
+                && apiException.getErrorResponse() != null
+                && apiException.getErrorResponse().getErrCode() != null) {
+            return apiException.getErrorResponse().getErrCode();
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    public void webhookReceived(int count) {
+        webhookCounter("received", "none").increment(count);
+    }
+
+    public void webhookAccepted() {
+        webhookCounter("accepted", "none").increment();
+    }
+
+    public void webhookRejected(String reason, int count) {
+        webhookCounter("rejected", reason).increment(count);
+    }
+
+    public void webhookDeduplicated() {
+        webhookCounter("deduplicated", "none").increment();
+    }
+
+    private Counter webhookCounter(String result, String reason) {
+        return Counter.builder(WEBHOOK_PAYLOADS)
+                .tag("result", result)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    public void historyPageFetched(int records) {
+        historyRecordsPerPage.record(records);
+    }
+
+    public void syncFinished(boolean delta, long durationMillis) {
+        Timer.builder("msc.sync.duration")
+                .tag("mode", delta ? "delta" : "full")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(durationMillis, TimeUnit.MILLISECONDS);
+        lastSyncDuration.set(durationMillis);
+        lastSyncTime.set(System.currentTimeMillis());
+    }
+
+    public void startupFinished(long durationMillis) {
+        Timer.builder("msc.startup.duration")
+                .register(registry)
+                .record(durationMillis, TimeUnit.MILLISECONDS);
+        startupDuration.set(durationMillis);
+    }
+
+    public void registerInFlightDeviceTasks(Supplier<Number> supplier) {
+        inFlightDeviceTasks = supplier;
+        Gauge.builder("msc.sync.device_tasks.in_flight", supplier)
+                .register(registry);
+    }
+
+    public void registerExecutorQueue(String executor, Supplier<Number> queueSize) {
+        Gauge.builder("msc.executor.queue_size", queueSize)
+                .tag("executor", executor)
+                .register(registry);
+    }
+
+    public void registerWebhookSpoolBacklog(Supplier<Number> backlogBytes) {
+        Gauge.builder("msc.webhook.spool.backlog_bytes", backlogBytes)
+                .description("Bytes of spooled webhook requests not handled yet")
+                .register(registry);
+    }
+
+    public synchronized void start() {
+        if (publisher != null) {
+            return;
+        }
+        publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "msc-metrics-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publishTask = publisher.scheduleAtFixedRate(this::publishSummary, PUBLISH_PERIOD_SECONDS, PUBLISH_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (publishTask != null) {
+            publishTask.cancel(false);
+            publishTask = null;
+        }
+        if (publisher != null) {
+            publisher.shutdown();
+            publisher = null;
+        }
+    }
+
+    /**
+     * Mirror the summary metrics into the sync health entities.
+     */
+    public void publishSummary() {
+        try {
+            val clientTimers = registry.find(CLIENT_REQUESTS).timers();
+            val apiRequests = clientTimers.stream().mapToLong(Timer::count).sum();
+            val apiErrors = clientTimers.stream()
+                    .filter(timer -> !"success".equals(timer.getId().getTag("status")))
+                    .mapToLong(Timer::count)
+                    .sum();
+            val totalMillis = clientTimers.stream().mapToDouble(timer -> timer.totalTime(TimeUnit.MILLISECONDS)).sum();
+
+            val values = new HashMap<String, Object>();
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.apiRequests), apiRequests);
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.apiErrors), apiErrors);
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.apiMeanLatency), apiRequests == 0 ? 0d : totalMillis / apiRequests);
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.webhookReceived), webhookCount("received"));
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.webhookAccepted), webhookCount("accepted"));
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.webhookRejected), webhookCount("rejected"));
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.webhookDeduplicated), webhookCount("deduplicated"));
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.inFlightDeviceTasks), inFlightDeviceTasks.get().longValue());
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.lastSyncDuration), lastSyncDuration.get());
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.lastSyncTime), lastSyncTime.get());
+            values.put(MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.startupDuration), startupDuration.get());
+            exchangeFlowExecutor.asyncExchangeUp(ExchangePayload.create(values));
+        } catch (Exception e) {
+            log.warn("Publish metrics summary failed", e);
+        }
+    }
+
+    private long webhookCount(String result) {
+        return (long) registry.find(WEBHOOK_PAYLOADS)
+                .tag("result", result)
+                .counters()
+                .stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket shared by all MSC OpenAPI calls issued by the data sync, so the sync never exceeds one request rate
+ * however many devices are being synced.
+ * <p>
+ * Requests of a user, e.g. sync_device, take a priority lane: the background requests yield while any of them is waiting.
+ */
+@Slf4j
+@Component
+public class MscRateBudget {
+
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+
+    private static final double MAX_BURST_SECONDS = 1;
+
+    private double permitsPerNano = DEFAULT_REQUESTS_PER_SECOND / TimeUnit.SECONDS.toNanos(1);
+
+    private double maxPermits = DEFAULT_REQUESTS_PER_SECOND * MAX_BURST_SECONDS;
+
+    private double storedPermits = maxPermits;
+
+    private long lastRefillNanos = System.nanoTime();
+
+    private final AtomicInteger priorityWaiters = new AtomicInteger();
+
+    public synchronized void setRequestsPerSecond(double requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requestsPerSecond must be positive");
+        }
+        refill(System.nanoTime());
+        permitsPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        maxPermits = Math.max(1, requestsPerSecond * MAX_BURST_SECONDS);
+        storedPermits = Math.min(storedPermits, maxPermits);
+    }
+
+    public synchronized double getRequestsPerSecond() {
+        return permitsPerNano * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Block until a request is allowed.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        acquire(false);
+    }
+
+    /**
+     * Block until a request is allowed.
+     *
+     * @param priority whether the request is requested by a user, the other requests wait while any of them is waiting
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(boolean priority) throws InterruptedException {
+        if (priority) {
+            priorityWaiters.incrementAndGet();
+        }
+        try {
+            long waitNanos;
+            while ((waitNanos = tryAcquire(priority)) > 0) {
+                LockSupport.parkNanos(this, waitNanos);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            if (priority) {
+                priorityWaiters.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return 0 if a permit is taken, otherwise the time to wait before the next permit is available
+     */
+    private synchronized long tryAcquire(boolean priority) {
+        val now = System.nanoTime();
+        refill(now);
+        if (!priority && priorityWaiters.get() > 0) {
+            // leave the permits to the priority requests
+            return Math.max(1, (long) (1 / permitsPerNano));
+        }
+        if (storedPermits >= 1) {
+            storedPermits -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) ((1 - storedPermits) / permitsPerNano));
+    }
+
+    private void refill(long now) {
+        storedPermits = Math.min(maxPermits, storedPermits + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+    }
+
+}
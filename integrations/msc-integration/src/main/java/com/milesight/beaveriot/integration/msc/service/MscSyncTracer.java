@@ -0,0 +1,88 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
+import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
+import com.milesight.beaveriot.eventbus.api.Event;
+import com.milesight.beaveriot.integration.msc.entity.MscServiceEntities;
+import com.milesight.beaveriot.integration.msc.entity.MscSyncHealthEntities;
+import com.milesight.beaveriot.integration.msc.model.SyncSpan;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the span trees of the last sync runs in a ring buffer.
+ */
+@Slf4j
+@Component
+public class MscSyncTracer {
+
+    private static final int MAX_SYNC_RUNS = 20;
+
+    private static final String SYNC_TRACES_KEY = MscSyncHealthEntities.getKey(MscSyncHealthEntities.SyncHealth.Fields.syncTraces);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SyncRun[] runs = new SyncRun[MAX_SYNC_RUNS];
+
+    private final AtomicLong runIdSequence = new AtomicLong();
+
+    // next slot of the ring buffer, guarded by runs
+    private int next = 0;
+
+    @Autowired
+    private ExchangeFlowExecutor exchangeFlowExecutor;
+
+    public SyncRun startRun(boolean delta) {
+        return new SyncRun(runIdSequence.incrementAndGet(), delta ? "delta" : "full", new SyncSpan("sync_run"), System.nanoTime());
+    }
+
+    public void finishRun(SyncRun run) {
+        run.root().end(run.startNanos());
+        synchronized (runs) {
+            runs[next] = run;
+            next = (next + 1) % runs.length;
+        }
+        if (log.isInfoEnabled()) {
+            val phases = new StringBuilder();
+            run.root().getChildren().forEach(span -> phases.append(String.format(" %s=%.0fms/%d", span.getName(), span.getDurationMillis(), span.getItems())));
+            log.info("Sync run {} ({}) finished in {} ms:{}", run.id(), run.mode(), String.format("%.0f", run.root().getDurationMillis()), phases);
+        }
+    }
+
+    /**
+     * @return finished runs, the latest first
+     */
+    public List<SyncRun> getRecentRuns() {
+        val result = new ArrayList<SyncRun>(runs.length);
+        synchronized (runs) {
+            for (int i = 1; i <= runs.length; i++) {
+                val run = runs[(next - i + runs.length) % runs.length];
+                if (run == null) {
+                    break;
+                }
+                result.add(run);
+            }
+        }
+        return result;
+    }
+
+    @SneakyThrows
+    @EventSubscribe(payloadKeyExpression = "msc-integration.integration.dump_sync_traces", eventType = ExchangeEvent.EventType.DOWN)
+    public void onDumpSyncTraces(Event<MscServiceEntities.DumpSyncTraces> event) {
+        exchangeFlowExecutor.asyncExchangeUp(ExchangePayload.create(SYNC_TRACES_KEY, objectMapper.writeValueAsString(getRecentRuns())));
+    }
+
+    public record SyncRun(long id, String mode, SyncSpan root, @JsonIgnore long startNanos) {
+    }
+
+}
@@ -2,25 +2,30 @@ package com.milesight.beaveriot.integration.msc.service;
 
 import com.milesight.beaveriot.context.api.DeviceServiceProvider;
 import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
-import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
-import com.milesight.beaveriot.context.integration.model.ExchangePayload;
 import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
 import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
 import com.milesight.beaveriot.eventbus.api.Event;
 import com.milesight.beaveriot.integration.msc.constant.MscIntegrationConstants;
 import com.milesight.beaveriot.integration.msc.entity.MscConnectionPropertiesEntities;
 import com.milesight.beaveriot.integration.msc.model.IntegrationStatus;
-import com.milesight.beaveriot.integration.msc.model.WebhookPayload;
+import com.milesight.beaveriot.integration.msc.model.WebhookEvent;
+import com.milesight.beaveriot.integration.msc.util.MscTslUtils;
+import com.milesight.beaveriot.integration.msc.util.MscWebhookBodyReader;
 import com.milesight.msc.sdk.utils.HMacUtils;
 import com.milesight.msc.sdk.utils.TimeUtils;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Nullable;
 import javax.crypto.Mac;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -28,12 +33,23 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Service
 public class MscWebhookService {
 
-    private static final String WEBHOOK_STATUS_KEY = MscConnectionPropertiesEntities.getKey(MscConnectionPropertiesEntities.Fields.webhookStatus);
-
     private static final int MAX_FAILURES = 10;
 
+    private static final int MAX_RECENT_EVENT_IDS = 4096;
+
     private final AtomicInteger failureCount = new AtomicInteger(0);
 
+    /**
+     * Ids of recently handled events, MSC may deliver the same event more than once
+     */
+    private final Set<String> recentEventIds = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<>(MAX_RECENT_EVENT_IDS * 4 / 3 + 1, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_RECENT_EVENT_IDS;
+                }
+            }));
+
     @Getter
     private boolean enabled = false;
 
@@ -43,17 +59,25 @@ public class MscWebhookService {
     private EntityValueServiceProvider entityValueServiceProvider;
 
     @Autowired
-    private ExchangeFlowExecutor exchangeFlowExecutor;
+    private DeviceServiceProvider deviceServiceProvider;
 
     @Autowired
-    private DeviceServiceProvider deviceServiceProvider;
+    private MscDataSyncService dataSyncService;
 
-    @Lazy
     @Autowired
-    private IMscClientProvider mscClientProvider;
+    private MscMetrics mscMetrics;
 
     @Autowired
-    private MscDataSyncService dataSyncService;
+    private MscDeviceSyncStates mscDeviceSyncStates;
+
+    @Autowired
+    private MscHistoryBackfillService mscHistoryBackfillService;
+
+    @Autowired
+    private MscWebhookSpoolService mscWebhookSpoolService;
+
+    @Autowired
+    private MscIntegrationStatusManager mscIntegrationStatusManager;
 
     public void init() {
         val webhookSettingsKey = MscConnectionPropertiesEntities.getKey(MscConnectionPropertiesEntities.Fields.webhook);
@@ -81,56 +105,109 @@ public class MscWebhookService {
         }
     }
 
+    /**
+     * Validate the request, then spool its body before acknowledging, or handle the events right away
+     * when the spool can't take it.
+     * <p>
+     * The body is not parsed before spooling, its events are counted when they are read by the consumer,
+     * so a request rejected here is counted as one event.
+     *
+     * @param body raw request body, a json array of webhook events
+     */
     public void handleWebhookData(String signature,
                                   String webhookUuid,
                                   String requestTimestamp,
                                   String requestNonce,
-                                  List<WebhookPayload> webhookPayloads) {
+                                  byte[] body) {
 
-        if (log.isDebugEnabled()) {
-            log.debug("Received webhook data: {} {} {} {} {}", signature, webhookUuid, requestTimestamp, requestNonce, webhookPayloads);
-        } else {
-            log.debug("Received webhook data, size: {}", webhookPayloads.size());
-        }
+        log.debug("Received webhook data: {} {} {} {}, size: {}", signature, webhookUuid, requestTimestamp, requestNonce, body.length);
         if (!enabled) {
             log.debug("Webhook is disabled.");
+            mscMetrics.webhookReceived(1);
+            mscMetrics.webhookRejected("disabled", 1);
             return;
         }
 
         val currentSeconds = TimeUtils.currentTimeSeconds();
         if (Long.parseLong(requestTimestamp) + 60 < currentSeconds) {
             log.warn("Webhook request outdated: {}", requestTimestamp);
+            mscMetrics.webhookReceived(1);
+            mscMetrics.webhookRejected("outdated", 1);
             markWebhookStatusAsError();
             return;
         }
 
         if (!isSignatureValid(signature, requestTimestamp, requestNonce)) {
             log.warn("Signature invalid: {}", signature);
+            mscMetrics.webhookReceived(1);
+            mscMetrics.webhookRejected("invalid_signature", 1);
             markWebhookStatusAsError();
             return;
         }
 
-        webhookPayloads.forEach(webhookPayload -> {
-            log.debug("Receive webhook payload: {}", webhookPayload);
-            val eventType = webhookPayload.getEventType();
-            if (eventType == null) {
-                log.warn("Event type not found");
-                return;
-            }
+        if (mscWebhookSpoolService.append(body)) {
+            // handled asynchronously by the spool
+            return;
+        }
+        readWebhookEvents(body).forEach(this::handleWebhookEvent);
+    }
 
-            // webhook is ready
-            updateWebhookStatus(IntegrationStatus.READY);
+    /**
+     * Parse and count the events of a validated request body.
+     *
+     * @return the events, empty if the body is invalid
+     */
+    public List<WebhookEvent> readWebhookEvents(byte[] body) {
+        final List<WebhookEvent> webhookEvents;
+        try {
+            webhookEvents = MscWebhookBodyReader.read(body);
+        } catch (IOException e) {
+            log.warn("Invalid webhook body: {}", e.getMessage());
+            mscMetrics.webhookReceived(1);
+            mscMetrics.webhookRejected("invalid_data", 1);
+            return List.of();
+        }
+        log.debug("Received webhook events: {}", webhookEvents);
+        mscMetrics.webhookReceived(webhookEvents.size());
+        return webhookEvents;
+    }
 
-            if ("device_data".equalsIgnoreCase(eventType)) {
-                try {
-                    handleDeviceData(webhookPayload);
-                } catch (Exception e) {
-                    log.error("Handle webhook data failed", e);
-                }
-            } else {
-                log.debug("Ignored event type: {}", eventType);
+    /**
+     * @return SN of the device the event belongs to, null if the event is not device data
+     */
+    @Nullable
+    public static String getDeviceSn(WebhookEvent webhookEvent) {
+        return webhookEvent.deviceData() == null ? null : webhookEvent.deviceData().getSn();
+    }
+
+    public void handleWebhookEvent(WebhookEvent webhookEvent) {
+        log.debug("Receive webhook event: {}", webhookEvent);
+        val eventType = webhookEvent.eventType();
+        if (eventType == null) {
+            log.warn("Event type not found");
+            mscMetrics.webhookRejected("missing_event_type", 1);
+            return;
+        }
+        if (webhookEvent.eventId() != null && !recentEventIds.add(webhookEvent.eventId())) {
+            log.debug("Duplicated event: {}", webhookEvent.eventId());
+            mscMetrics.webhookDeduplicated();
+            return;
+        }
+
+        // webhook is ready
+        updateWebhookStatus(IntegrationStatus.READY);
+
+        if (MscWebhookBodyReader.DEVICE_DATA_EVENT_TYPE.equalsIgnoreCase(eventType)) {
+            try {
+                handleDeviceData(webhookEvent);
+            } catch (Exception e) {
+                log.error("Handle webhook data failed", e);
+                mscMetrics.webhookRejected("error", 1);
             }
-        });
+        } else {
+            log.debug("Ignored event type: {}", eventType);
+            mscMetrics.webhookRejected("ignored_type", 1);
+        }
     }
 
     /**
@@ -144,43 +221,59 @@ public class MscWebhookService {
     }
 
     private void updateWebhookStatus(@NonNull IntegrationStatus status) {
-        if (!IntegrationStatus.ERROR.equals(status)) {
+        if (!IntegrationStatus.ERROR.equals(status) && failureCount.get() != 0) {
             // recover from error
             failureCount.set(0);
         }
-        exchangeFlowExecutor.asyncExchangeUp(ExchangePayload.create(WEBHOOK_STATUS_KEY, status.name()));
+        val previousStatus = mscIntegrationStatusManager.updateWebhookStatus(status);
+        if (IntegrationStatus.READY.equals(status) && previousStatus != null && !IntegrationStatus.READY.equals(previousStatus)) {
+            mscHistoryBackfillService.onWebhookRecovered();
+        }
     }
 
-    private void handleDeviceData(WebhookPayload webhookPayload) {
-        if (webhookPayload.getData() == null) {
-            log.warn("Webhook data is null: {}", webhookPayload);
+    private void handleDeviceData(WebhookEvent webhookEvent) {
+        val deviceData = webhookEvent.deviceData();
+        if (deviceData == null) {
+            log.warn("Webhook data is null: {}", webhookEvent);
+            mscMetrics.webhookRejected("invalid_data", 1);
             return;
         }
-        val client = mscClientProvider.getMscClient();
-        val deviceData = client.getObjectMapper().convertValue(webhookPayload.getData(), WebhookPayload.DeviceData.class);
         if (!"PROPERTY".equalsIgnoreCase(deviceData.getType())
                 && !"EVENT".equalsIgnoreCase(deviceData.getType())) {
             log.debug("Not tsl property or event: {}", deviceData.getType());
+            mscMetrics.webhookRejected("ignored_type", 1);
             return;
         }
-        val eventId = deviceData.getTslId();
-        val data = deviceData.getPayload();
-        val profile = deviceData.getDeviceProfile();
-        if (data == null || profile == null) {
+        val sn = deviceData.getSn();
+        if (!deviceData.isPayloadPresent() || sn == null) {
             log.warn("Invalid data: {}", deviceData);
+            mscMetrics.webhookRejected("invalid_data", 1);
             return;
         }
 
-        val sn = deviceData.getDeviceProfile().getSn();
         val device = deviceServiceProvider.findByIdentifier(sn, MscIntegrationConstants.INTEGRATION_IDENTIFIER);
         if (device == null) {
             log.warn("Device not added, try to sync data: {}", sn);
             dataSyncService.syncDeviceData(new MscDataSyncService.Task(MscDataSyncService.Task.Type.ADD_LOCAL_DEVICE, sn, null));
+            mscMetrics.webhookRejected("unknown_device", 1);
             return;
         }
 
+        val eventCreatedTime = webhookEvent.eventCreatedTime() > 0
+                ? webhookEvent.eventCreatedTime() * 1000
+                : System.currentTimeMillis();
+        val deviceId = deviceData.getDeviceId() != 0 ? deviceData.getDeviceId() : mscDeviceSyncStates.findDeviceId(sn);
+        if (deviceId != 0) {
+            val gapStartTime = mscDeviceSyncStates.markWebhookReceived(deviceId, sn, System.currentTimeMillis(), eventCreatedTime);
+            if (gapStartTime > 0) {
+                log.info("Event cadence of device '{}' broken, back-fill history from {} to {}", sn, gapStartTime, eventCreatedTime);
+                mscHistoryBackfillService.requestBackfill(deviceId, gapStartTime, eventCreatedTime);
+            }
+        }
         // save data
-        dataSyncService.saveHistoryData(device.getKey(), eventId, data, webhookPayload.getEventCreatedTime() * 1000, true);
+        val payload = MscTslUtils.convertWebhookDeviceDataToExchangePayload(device.getKey(), deviceData);
+        dataSyncService.saveHistoryData(payload, eventCreatedTime, true);
+        mscMetrics.webhookAccepted();
     }
 
     public boolean isSignatureValid(String signature, String requestTimestamp, String requestNonce) {
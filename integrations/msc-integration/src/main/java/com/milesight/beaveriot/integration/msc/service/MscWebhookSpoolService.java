@@ -0,0 +1,216 @@
+package com.milesight.beaveriot.integration.msc.service;
+
+import com.milesight.beaveriot.integration.msc.constant.MscIntegrationConstants;
+import com.milesight.beaveriot.integration.msc.model.WebhookEvent;
+import com.milesight.beaveriot.integration.msc.spool.WebhookSpool;
+import com.milesight.beaveriot.integration.msc.spool.WebhookSpoolSettings;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spools accepted webhook requests to disk before they are acknowledged, and handles them asynchronously.
+ * <p>
+ * MSC doesn't resend a request once it's acknowledged, the spool keeps the requests which are not handled yet
+ * across restarts, they are replayed when the integration starts.
+ * <p>
+ * The consumer parses each spooled body once and hands its events to handler threads partitioned by device,
+ * so the events of a device keep their order while different devices are handled concurrently.
+ * The polled bodies are committed after all of their events are handled.
+ * The spool is configured by the {@code msc-integration.webhook-spool.*} properties.
+ */
+@Slf4j
+@Service
+public class MscWebhookSpoolService {
+
+    private static final String PROPERTY_PREFIX = "msc-integration.webhook-spool.";
+
+    /**
+     * Max bodies handled between two commits
+     */
+    private static final int MAX_BATCH_BODIES = 64;
+
+    @Autowired
+    private Environment environment;
+
+    @Lazy
+    @Autowired
+    private MscWebhookService mscWebhookService;
+
+    @Autowired
+    private MscMetrics mscMetrics;
+
+    private volatile WebhookSpool spool;
+
+    private volatile boolean running;
+
+    private Thread consumer;
+
+    private ExecutorService[] handlers;
+
+    /**
+     * Open the spool and start handling the requests, the ones left by the last run are handled first.
+     */
+    public synchronized void start() {
+        if (spool != null) {
+            return;
+        }
+        val settings = loadSettings();
+        if (!settings.isEnabled()) {
+            log.info("Webhook spool is disabled");
+            return;
+        }
+        try {
+            spool = new WebhookSpool(MscIntegrationConstants.LocalStorage.getDataDirectory()
+                    .resolve(MscIntegrationConstants.LocalStorage.WEBHOOK_SPOOL_DIRECTORY), settings);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to open webhook spool, webhook requests will be handled without spooling", e);
+            return;
+        }
+        val currentSpool = spool;
+        if (currentSpool.getBacklogBytes() > 0) {
+            log.info("Replaying {} bytes of webhook requests from the spool", currentSpool.getBacklogBytes());
+        }
+        mscMetrics.registerWebhookSpoolBacklog(currentSpool::getBacklogBytes);
+        handlers = new ExecutorService[Math.max(1, settings.getHandlerThreads())];
+        for (int i = 0; i < handlers.length; i++) {
+            val name = "msc-webhook-handler-" + i;
+            handlers[i] = Executors.newSingleThreadExecutor(r -> {
+                val thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        val currentHandlers = handlers;
+        running = true;
+        consumer = new Thread(() -> consume(currentSpool, currentHandlers), "msc-webhook-spool-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+        log.info("Webhook spool started: {}", settings);
+    }
+
+    /**
+     * Stop handling and close the spool, the requests not handled yet are kept for the next start.
+     */
+    public synchronized void stop() {
+        val currentSpool = spool;
+        if (currentSpool == null) {
+            return;
+        }
+        // new requests are handled directly from now on
+        spool = null;
+        running = false;
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+            // the bodies being handled are not committed and will be replayed
+            consumer.interrupt();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (val handler : handlers) {
+            handler.shutdownNow();
+        }
+        handlers = null;
+        currentSpool.close();
+        log.info("Webhook spool stopped, {} bytes left", currentSpool.getBacklogBytes());
+    }
+
+    /**
+     * @return true if the request body is spooled and will be handled asynchronously,
+     * false if it should be handled by the caller because the spool is not running, full or the body is too large
+     */
+    public boolean append(byte[] body) {
+        val currentSpool = spool;
+        if (currentSpool == null) {
+            return false;
+        }
+        try {
+            if (currentSpool.append(body)) {
+                return true;
+            }
+            log.warn("Webhook spool is full or the request is too large, size: {}", body.length);
+        } catch (IOException e) {
+            log.error("Failed to append webhook request to the spool", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void consume(WebhookSpool currentSpool, ExecutorService[] currentHandlers) {
+        val pending = new ArrayList<CompletableFuture<Void>>();
+        while (running) {
+            try {
+                var body = currentSpool.poll(1, TimeUnit.SECONDS);
+                var bodies = 0;
+                while (body != null) {
+                    for (val webhookEvent : mscWebhookService.readWebhookEvents(body)) {
+                        val handler = currentHandlers[Math.floorMod(
+                                Objects.hashCode(MscWebhookService.getDeviceSn(webhookEvent)), currentHandlers.length)];
+                        pending.add(CompletableFuture.runAsync(() -> handle(webhookEvent), handler));
+                    }
+                    body = ++bodies < MAX_BATCH_BODIES ? currentSpool.poll(0, TimeUnit.SECONDS) : null;
+                }
+                if (bodies == 0) {
+                    continue;
+                }
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).get();
+                pending.clear();
+                currentSpool.commit();
+            } catch (ExecutionException e) {
+                // not expected, the handler catches all exceptions
+                log.error("Handle spooled webhook requests failed", e);
+                pending.clear();
+                currentSpool.commit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void handle(WebhookEvent webhookEvent) {
+        try {
+            mscWebhookService.handleWebhookEvent(webhookEvent);
+        } catch (Exception e) {
+            // an event which can't be handled must not block the spool
+            log.error("Handle spooled webhook event failed", e);
+        }
+    }
+
+    private WebhookSpoolSettings loadSettings() {
+        val defaults = WebhookSpoolSettings.builder().build();
+        return WebhookSpoolSettings.builder()
+                .enabled(environment.getProperty(PROPERTY_PREFIX + "enabled", Boolean.class, defaults.isEnabled()))
+                .segmentBytes(environment.getProperty(PROPERTY_PREFIX + "segment-size", DataSize.class,
+                        DataSize.ofBytes(defaults.getSegmentBytes())).toBytes())
+                .maxBytes(environment.getProperty(PROPERTY_PREFIX + "max-size", DataSize.class,
+                        DataSize.ofBytes(defaults.getMaxBytes())).toBytes())
+                .fsyncPolicy(environment.getProperty(PROPERTY_PREFIX + "fsync-policy", WebhookSpoolSettings.FsyncPolicy.class,
+                        defaults.getFsyncPolicy()))
+                .groupCommitWindow(environment.getProperty(PROPERTY_PREFIX + "group-commit-window", Duration.class,
+                        defaults.getGroupCommitWindow()))
+                .fsyncInterval(environment.getProperty(PROPERTY_PREFIX + "fsync-interval", Duration.class,
+                        defaults.getFsyncInterval()))
+                .checkpointInterval(environment.getProperty(PROPERTY_PREFIX + "checkpoint-interval", Duration.class,
+                        defaults.getCheckpointInterval()))
+                .handlerThreads(environment.getProperty(PROPERTY_PREFIX + "handler-threads", Integer.class,
+                        defaults.getHandlerThreads()))
+                .build();
+    }
+
+}
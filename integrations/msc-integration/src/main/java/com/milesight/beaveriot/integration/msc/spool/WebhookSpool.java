@@ -0,0 +1,477 @@
+package com.milesight.beaveriot.integration.msc.spool;
+
+import lombok.*;
+import lombok.extern.slf4j.*;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only spool of webhook request bodies in memory-mapped segment files.
+ * <p>
+ * A record is the body length (int), the CRC32C of the body (int) and the body.
+ * Offsets are global, the file name of a segment is the offset of its first record.
+ * When opened, the written length of each segment is recovered by scanning the records,
+ * a zero length or a checksum mismatch (a torn write) ends the segment.
+ * <p>
+ * There is a single consumer, it polls the records in order and commits after handling them.
+ * The committed offset is checkpointed periodically and the records after the checkpoint are replayed when reopened,
+ * so a record may be handled more than once. Segments before the checkpoint are deleted.
+ */
+@Slf4j
+public class WebhookSpool implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final long CHECKPOINT_MAGIC = 0x4d5343575350L;
+
+    private final Path directory;
+
+    private final WebhookSpoolSettings settings;
+
+    /**
+     * Guarded by this
+     */
+    private final List<Segment> segments = new ArrayList<>();
+
+    private final Object flushLock = new Object();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * End of the last appended record
+     */
+    private volatile long writeOffset;
+
+    /**
+     * Guarded by flushLock
+     */
+    private long flushedOffset;
+
+    /**
+     * Position of the consumer, guarded by this
+     */
+    private long readOffset;
+
+    private volatile long committedOffset;
+
+    private volatile long checkpointedOffset;
+
+    private volatile boolean closed;
+
+    private Thread groupCommitThread;
+
+    public WebhookSpool(Path directory, WebhookSpoolSettings settings) throws IOException {
+        if (settings.getSegmentBytes() <= HEADER_BYTES || settings.getSegmentBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + settings.getSegmentBytes());
+        }
+        this.directory = directory;
+        this.settings = settings;
+        Files.createDirectories(directory);
+        checkpointedOffset = readCheckpoint();
+        openSegments();
+        val first = segments.get(0);
+        // the checkpoint may point to deleted segments or beyond a torn tail
+        committedOffset = Math.min(Math.max(checkpointedOffset, first.baseOffset), writeOffset);
+        readOffset = committedOffset;
+        flushedOffset = writeOffset;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "msc-webhook-spool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        val checkpointMillis = settings.getCheckpointInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkpoint, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        if (settings.getFsyncPolicy() == WebhookSpoolSettings.FsyncPolicy.PERIODIC) {
+            val fsyncMillis = settings.getFsyncInterval().toMillis();
+            scheduler.scheduleWithFixedDelay(this::flush, fsyncMillis, fsyncMillis, TimeUnit.MILLISECONDS);
+        } else if (settings.getFsyncPolicy() == WebhookSpoolSettings.FsyncPolicy.GROUP_COMMIT) {
+            groupCommitThread = new Thread(this::groupCommitLoop, "msc-webhook-spool-commit");
+            groupCommitThread.setDaemon(true);
+            groupCommitThread.start();
+        }
+    }
+
+    /**
+     * Append a request body, it returns when the body is as durable as the fsync policy requires.
+     *
+     * @return false if the body is not spooled because the spool is closed, full or the body is larger than a segment
+     */
+    public boolean append(byte[] body) throws IOException, InterruptedException {
+        val recordBytes = HEADER_BYTES + body.length;
+        final Segment segment;
+        final int position;
+        final long endOffset;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            var last = segments.get(segments.size() - 1);
+            if ((long) last.length + recordBytes > last.capacity()) {
+                if (recordBytes > settings.getSegmentBytes()) {
+                    return false;
+                }
+                if (!hasRoomForSegment()) {
+                    return false;
+                }
+                last = openSegment(writeOffset, true);
+                segments.add(last);
+            }
+            segment = last;
+            position = segment.length;
+            segment.buffer.putInt(position + 4, checksum(body));
+            segment.buffer.put(position + HEADER_BYTES, body);
+            segment.buffer.putInt(position, body.length);
+            segment.length = position + recordBytes;
+            endOffset = segment.baseOffset + segment.length;
+            writeOffset = endOffset;
+            // wake up the consumer
+            notifyAll();
+        }
+        switch (settings.getFsyncPolicy()) {
+            case PER_REQUEST -> segment.buffer.force(position, recordBytes);
+            case GROUP_COMMIT -> awaitFlushed(endOffset);
+            case PERIODIC -> {
+                // synced in the background
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the next body after the last polled one, null if there is none within the timeout
+     */
+    @Nullable
+    public synchronized byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+        val deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (readOffset >= writeOffset) {
+            val remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (closed || remainingMillis <= 0) {
+                return null;
+            }
+            wait(remainingMillis);
+        }
+        val segment = segmentAt(readOffset);
+        if (readOffset < segment.baseOffset) {
+            // skip the gap after a torn segment
+            readOffset = segment.baseOffset;
+        }
+        val position = (int) (readOffset - segment.baseOffset);
+        val body = new byte[segment.buffer.getInt(position)];
+        segment.buffer.get(position + HEADER_BYTES, body);
+        readOffset += HEADER_BYTES + body.length;
+        return body;
+    }
+
+    /**
+     * Mark the records polled so far as handled.
+     */
+    public synchronized void commit() {
+        committedOffset = readOffset;
+    }
+
+    /**
+     * @return bytes of the appended records which are not handled yet
+     */
+    public long getBacklogBytes() {
+        return writeOffset - committedOffset;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        scheduler.shutdown();
+        if (groupCommitThread != null) {
+            groupCommitThread.interrupt();
+        }
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        checkpoint();
+        synchronized (this) {
+            for (val segment : segments) {
+                closeQuietly(segment);
+            }
+            segments.clear();
+        }
+    }
+
+    private void openSegments() throws IOException {
+        val baseOffsets = new ArrayList<Long>();
+        try (val files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            baseOffsets.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException e) {
+                            log.warn("Ignored unknown file in webhook spool: {}", name);
+                        }
+                    });
+        }
+        baseOffsets.sort(Long::compare);
+        for (val baseOffset : baseOffsets) {
+            val segment = openSegment(baseOffset, false);
+            segment.length = recoverLength(segment.buffer);
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.add(openSegment(checkpointedOffset, true));
+        }
+        val last = segments.get(segments.size() - 1);
+        // clear the torn tail, so it's never mistaken for records appended later
+        for (int i = last.length; i < last.capacity(); i++) {
+            last.buffer.put(i, (byte) 0);
+        }
+        writeOffset = last.baseOffset + last.length;
+        if (writeOffset > last.baseOffset || segments.size() > 1) {
+            log.info("Opened webhook spool with {} segments, last offset: {}, checkpoint: {}", segments.size(), writeOffset, checkpointedOffset);
+        }
+    }
+
+    private Segment openSegment(long baseOffset, boolean create) throws IOException {
+        val file = directory.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+        val channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            val size = create ? settings.getSegmentBytes() : Math.max(channel.size(), HEADER_BYTES);
+            return new Segment(baseOffset, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private int recoverLength(MappedByteBuffer buffer) {
+        var position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            val length = buffer.getInt(position);
+            if (length <= 0 || (long) position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            if (checksum(buffer, position + HEADER_BYTES, length) != buffer.getInt(position + 4)) {
+                log.warn("Torn record found in webhook spool at position {}", position);
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    /**
+     * @return the segment containing the offset, or the first segment after it
+     */
+    private Segment segmentAt(long offset) {
+        for (val segment : segments) {
+            if (offset < segment.baseOffset + segment.length) {
+                return segment;
+            }
+        }
+        throw new IllegalStateException("Offset out of range: " + offset);
+    }
+
+    private boolean hasRoomForSegment() {
+        if ((segments.size() + 1L) * settings.getSegmentBytes() <= settings.getMaxBytes()) {
+            return true;
+        }
+        deleteCheckpointedSegments();
+        return (segments.size() + 1L) * settings.getSegmentBytes() <= settings.getMaxBytes();
+    }
+
+    private void awaitFlushed(long offset) throws InterruptedException {
+        synchronized (flushLock) {
+            // wake up the group commit thread
+            flushLock.notifyAll();
+            while (flushedOffset < offset && !closed) {
+                flushLock.wait();
+            }
+        }
+    }
+
+    private void groupCommitLoop() {
+        val windowMillis = settings.getGroupCommitWindow().toMillis();
+        try {
+            while (!closed) {
+                synchronized (flushLock) {
+                    while (!closed && writeOffset <= flushedOffset) {
+                        flushLock.wait();
+                    }
+                }
+                if (windowMillis > 0) {
+                    // gather the requests arriving within the window
+                    Thread.sleep(windowMillis);
+                }
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush() {
+        val targetOffset = writeOffset;
+        final long fromOffset;
+        synchronized (flushLock) {
+            fromOffset = flushedOffset;
+        }
+        if (targetOffset <= fromOffset) {
+            return;
+        }
+        final List<Segment> dirtySegments;
+        synchronized (this) {
+            dirtySegments = segments.stream()
+                    .filter(segment -> segment.baseOffset + segment.length > fromOffset)
+                    .toList();
+        }
+        try {
+            dirtySegments.forEach(segment -> segment.buffer.force());
+        } catch (RuntimeException e) {
+            // e.g. the segment is closed concurrently, it's consumed then
+            log.debug("Sync webhook spool failed", e);
+        }
+        synchronized (flushLock) {
+            flushedOffset = Math.max(flushedOffset, targetOffset);
+            flushLock.notifyAll();
+        }
+    }
+
+    private void checkpoint() {
+        val offset = committedOffset;
+        if (offset != checkpointedOffset) {
+            try {
+                val tempFile = directory.resolve(CHECKPOINT_FILE + ".tmp");
+                try (val out = new DataOutputStream(Files.newOutputStream(tempFile))) {
+                    out.writeLong(offset);
+                    out.writeLong(offset ^ CHECKPOINT_MAGIC);
+                }
+                Files.move(tempFile, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                checkpointedOffset = offset;
+            } catch (IOException e) {
+                log.warn("Write webhook spool checkpoint failed", e);
+                return;
+            }
+        }
+        synchronized (this) {
+            deleteCheckpointedSegments();
+        }
+    }
+
+    private long readCheckpoint() {
+        val file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        try (val in = new DataInputStream(Files.newInputStream(file))) {
+            val offset = in.readLong();
+            if ((offset ^ CHECKPOINT_MAGIC) == in.readLong()) {
+                return offset;
+            }
+        } catch (IOException e) {
+            log.warn("Read webhook spool checkpoint failed", e);
+        }
+        // replay everything rather than losing data
+        log.warn("Invalid webhook spool checkpoint, replay all segments");
+        return 0;
+    }
+
+    /**
+     * Guarded by this
+     */
+    private void deleteCheckpointedSegments() {
+        while (segments.size() > 1 && segments.get(0).baseOffset + segments.get(0).length <= checkpointedOffset) {
+            val segment = segments.remove(0);
+            closeQuietly(segment);
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                log.warn("Delete webhook spool segment failed: {}", segment.file, e);
+            }
+        }
+    }
+
+    private int checksum(byte[] body) {
+        synchronized (crc) {
+            crc.reset();
+            crc.update(body);
+            return (int) crc.getValue();
+        }
+    }
+
+    private int checksum(MappedByteBuffer buffer, int position, int length) {
+        synchronized (crc) {
+            crc.reset();
+            crc.update(buffer.slice(position, length));
+            return (int) crc.getValue();
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            log.debug("Close webhook spool segment failed: {}", segment.file, e);
+        }
+    }
+
+    private static class Segment {
+
+        private final long baseOffset;
+
+        private final Path file;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Written bytes, guarded by the spool
+         */
+        private int length;
+
+        private Segment(long baseOffset, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+    }
+
+}
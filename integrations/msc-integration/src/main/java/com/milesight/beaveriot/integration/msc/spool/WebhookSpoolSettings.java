@@ -0,0 +1,73 @@
+package com.milesight.beaveriot.integration.msc.spool;
+
+import lombok.*;
+
+import java.time.Duration;
+
+@Getter
+@Builder
+@ToString
+public class WebhookSpoolSettings {
+
+    @Builder.Default
+    private boolean enabled = true;
+
+    /**
+     * Size of a segment file, a request body larger than a segment is not spooled
+     */
+    @Builder.Default
+    private long segmentBytes = 16L * 1024 * 1024;
+
+    /**
+     * Total size of the segment files, requests are not spooled while the spool is full
+     */
+    @Builder.Default
+    private long maxBytes = 512L * 1024 * 1024;
+
+    @Builder.Default
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.GROUP_COMMIT;
+
+    /**
+     * How long a group commit waits for more requests before syncing
+     */
+    @Builder.Default
+    private Duration groupCommitWindow = Duration.ofMillis(5);
+
+    /**
+     * Interval of the periodic sync
+     */
+    @Builder.Default
+    private Duration fsyncInterval = Duration.ofSeconds(1);
+
+    @Builder.Default
+    private Duration checkpointInterval = Duration.ofSeconds(1);
+
+    /**
+     * Threads handling the spooled events, the events of a device are always handled by the same thread
+     */
+    @Builder.Default
+    private int handlerThreads = 4;
+
+    /**
+     * When appended requests are synced to the disk.
+     * <p>
+     * The segments are memory-mapped, so an appended request survives a crash of the process in any case,
+     * syncing only matters when the operating system crashes or the power is lost.
+     */
+    public enum FsyncPolicy {
+        /**
+         * Sync before acknowledging each request, the most durable and the slowest
+         */
+        PER_REQUEST,
+        /**
+         * Sync the requests received within a short window together, each request waits for the sync before acknowledging
+         */
+        GROUP_COMMIT,
+        /**
+         * Sync in the background, requests are acknowledged right away and the last interval may be lost
+         */
+        PERIODIC,
+        ;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.milesight.beaveriot.integration.msc.util;
+
+import com.milesight.beaveriot.context.integration.model.Entity;
+import lombok.*;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Structural diff between the entities of a local device and the entities generated from its thing specification.
+ */
+public class MscEntityDiffUtils {
+
+    private MscEntityDiffUtils() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @param existing  top level entities of the local device
+     * @param generated top level entities generated from the thing specification
+     */
+    public static EntityDiff diff(@Nullable List<Entity> existing, List<Entity> generated) {
+        val keyToExisting = new HashMap<String, Entity>();
+        if (existing != null) {
+            existing.forEach(entity -> keyToExisting.put(entity.getKey(), entity));
+        }
+        val added = new ArrayList<String>();
+        val changed = new ArrayList<String>();
+        val merged = new ArrayList<Entity>(generated.size());
+        for (val entity : generated) {
+            val existingEntity = keyToExisting.remove(entity.getKey());
+            if (existingEntity == null) {
+                added.add(entity.getKey());
+                merged.add(entity);
+            } else if (isSame(existingEntity, entity)) {
+                merged.add(existingEntity);
+            } else {
+                changed.add(entity.getKey());
+                merged.add(entity);
+            }
+        }
+        return new EntityDiff(added, new ArrayList<>(keyToExisting.keySet()), changed, merged);
+    }
+
+    /**
+     * Compare the definition of two entities and their children, values are not compared.
+     */
+    public static boolean isSame(Entity a, Entity b) {
+        if (!Objects.equals(a.getKey(), b.getKey())
+                || !Objects.equals(a.getName(), b.getName())
+                || a.getType() != b.getType()
+                || a.getAccessMod() != b.getAccessMod()
+                || a.getValueType() != b.getValueType()
+                || !isSameValue(a.getAttributes(), b.getAttributes())) {
+            return false;
+        }
+        val childrenA = a.getChildren() == null ? List.<Entity>of() : a.getChildren();
+        val childrenB = b.getChildren() == null ? List.<Entity>of() : b.getChildren();
+        if (childrenA.size() != childrenB.size()) {
+            return false;
+        }
+        val keyToChildB = new HashMap<String, Entity>();
+        childrenB.forEach(child -> keyToChildB.put(child.getKey(), child));
+        for (val childA : childrenA) {
+            val childB = keyToChildB.get(childA.getKey());
+            if (childB == null || !isSame(childA, childB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Attributes loaded from the database may have other number types than the generated ones, e.g. Long and Integer,
+     * and an empty map may be loaded as null.
+     */
+    private static boolean isSameValue(@Nullable Object a, @Nullable Object b) {
+        if (a instanceof Map<?, ?> mapA && mapA.isEmpty()) {
+            a = null;
+        }
+        if (b instanceof Map<?, ?> mapB && mapB.isEmpty()) {
+            b = null;
+        }
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a instanceof Number numberA && b instanceof Number numberB) {
+            return toBigDecimal(numberA).compareTo(toBigDecimal(numberB)) == 0;
+        }
+        if (a instanceof Map<?, ?> mapA && b instanceof Map<?, ?> mapB) {
+            if (mapA.size() != mapB.size()) {
+                return false;
+            }
+            for (val entry : mapA.entrySet()) {
+                if (!mapB.containsKey(entry.getKey()) || !isSameValue(entry.getValue(), mapB.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof List<?> listA && b instanceof List<?> listB) {
+            if (listA.size() != listB.size()) {
+                return false;
+            }
+            for (int i = 0; i < listA.size(); i++) {
+                if (!isSameValue(listA.get(i), listB.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof Enum<?> || b instanceof Enum<?>) {
+            return a.toString().equals(b.toString());
+        }
+        return a.equals(b);
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal bigDecimal) {
+            return bigDecimal;
+        }
+        if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(number.doubleValue());
+        }
+        return new BigDecimal(number.toString());
+    }
+
+    /**
+     * @param addedKeys   keys of the entities only generated
+     * @param removedKeys keys of the entities only existing
+     * @param changedKeys keys of the entities whose definition changed
+     * @param merged      the generated entities, with the unchanged ones replaced by the existing instances
+     */
+    public record EntityDiff(List<String> addedKeys, List<String> removedKeys, List<String> changedKeys,
+                             List<Entity> merged) {
+
+        public boolean isEmpty() {
+            return addedKeys.isEmpty() && removedKeys.isEmpty() && changedKeys.isEmpty();
+        }
+
+    }
+
+}
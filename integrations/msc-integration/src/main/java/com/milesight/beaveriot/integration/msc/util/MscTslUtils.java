@@ -16,6 +16,7 @@ import com.milesight.beaveriot.context.integration.enums.AccessMod;
 import com.milesight.beaveriot.context.integration.enums.EntityValueType;
 import com.milesight.beaveriot.context.integration.model.Entity;
 import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import com.milesight.beaveriot.integration.msc.model.WebhookDeviceData;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
@@ -361,6 +362,29 @@ public class MscTslUtils {
     private record JsonEntry(String parentEntityKey, JsonNode value) {
     }
 
+    /**
+     * Convert the flattened TSL values of webhook device data to exchange payload
+     *
+     * @param deviceKey  The device key
+     * @param deviceData The device data decoded by {@link MscWebhookBodyReader}
+     * @return exchange payload, null if there is no value
+     */
+    @Nullable
+    public static ExchangePayload convertWebhookDeviceDataToExchangePayload(String deviceKey, WebhookDeviceData deviceData) {
+        if (deviceData.size() == 0) {
+            return null;
+        }
+        // same keys as convertJsonNodeToExchangePayload, properties are root items while an event is the parent of its outputs
+        val prefix = deviceData.getTslId() == null
+                ? deviceKey + "."
+                : deviceKey + "." + deviceData.getTslId() + "@";
+        val result = new HashMap<String, Object>(deviceData.size() * 4 / 3 + 1);
+        for (int i = 0; i < deviceData.size(); i++) {
+            result.put(prefix + deviceData.getPath(i), deviceData.getValue(i));
+        }
+        return ExchangePayload.create(result);
+    }
+
     public static Map<String, JsonNode> convertExchangePayloadMapToGroupedJsonNode(@NotNull ObjectMapper objectMapper, @NotNull String entityKeyPublicPrefix, @NotNull Map<String, Object> keyValues) {
         Objects.requireNonNull(objectMapper);
         Objects.requireNonNull(entityKeyPublicPrefix);
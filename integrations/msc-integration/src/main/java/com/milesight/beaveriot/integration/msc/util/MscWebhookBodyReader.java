@@ -0,0 +1,208 @@
+package com.milesight.beaveriot.integration.msc.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.milesight.beaveriot.integration.msc.model.WebhookDeviceData;
+import com.milesight.beaveriot.integration.msc.model.WebhookEvent;
+import lombok.*;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of webhook request bodies.
+ * <p>
+ * The body is parsed in one pass: the data of device_data events is decoded straight into {@link WebhookDeviceData}
+ * with the TSL payload flattened, and the data of other event types is skipped without being materialized.
+ * The data is only buffered when it comes before the event type in the json object.
+ */
+public class MscWebhookBodyReader {
+
+    public static final String DEVICE_DATA_EVENT_TYPE = "device_data";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private MscWebhookBodyReader() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @param body a json array of webhook events, or a single event object
+     */
+    public static List<WebhookEvent> read(byte[] body) throws IOException {
+        try (val parser = JSON_FACTORY.createParser(body)) {
+            val token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                return List.of(readEvent(parser));
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Webhook body should be a json array");
+            }
+            val events = new ArrayList<WebhookEvent>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                events.add(readEvent(parser));
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Webhook event should be a json object");
+            }
+            return events;
+        }
+    }
+
+    private static WebhookEvent readEvent(JsonParser parser) throws IOException {
+        String eventId = null;
+        String eventType = null;
+        long eventCreatedTime = 0;
+        WebhookDeviceData deviceData = null;
+        TokenBuffer bufferedData = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val field = parser.currentName();
+            val token = parser.nextToken();
+            switch (field) {
+                case "eventId", "event_id" -> eventId = readText(parser);
+                case "eventType", "event_type" -> eventType = readText(parser);
+                case "eventCreatedTime", "event_created_time" ->
+                        eventCreatedTime = token.isNumeric() ? parser.getLongValue() : 0;
+                case "data" -> {
+                    if (eventType == null) {
+                        // the event type is unknown yet
+                        bufferedData = new TokenBuffer(parser);
+                        bufferedData.copyCurrentStructure(parser);
+                    } else if (DEVICE_DATA_EVENT_TYPE.equalsIgnoreCase(eventType)) {
+                        deviceData = readDeviceData(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (bufferedData != null && DEVICE_DATA_EVENT_TYPE.equalsIgnoreCase(eventType)) {
+            try (val dataParser = bufferedData.asParser()) {
+                dataParser.nextToken();
+                deviceData = readDeviceData(dataParser);
+            }
+        }
+        return new WebhookEvent(eventId, eventCreatedTime, eventType, deviceData);
+    }
+
+    @Nullable
+    private static WebhookDeviceData readDeviceData(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        val deviceData = new WebhookDeviceData();
+        TokenBuffer bufferedPayload = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "deviceProfile", "device_profile" -> readDeviceProfile(parser, deviceData);
+                case "type" -> deviceData.setType(readText(parser));
+                case "tslId", "tsl_id" -> deviceData.setTslId(readText(parser));
+                case "payload" -> {
+                    if (parser.currentToken() != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                    } else if (deviceData.getType() == null) {
+                        // the type is unknown yet
+                        bufferedPayload = new TokenBuffer(parser);
+                        bufferedPayload.copyCurrentStructure(parser);
+                    } else if (isTslDataType(deviceData.getType())) {
+                        deviceData.setPayloadPresent(true);
+                        readTslObject(parser, null, deviceData);
+                    } else {
+                        deviceData.setPayloadPresent(true);
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (bufferedPayload != null) {
+            deviceData.setPayloadPresent(true);
+            if (isTslDataType(deviceData.getType())) {
+                try (val payloadParser = bufferedPayload.asParser()) {
+                    payloadParser.nextToken();
+                    readTslObject(payloadParser, null, deviceData);
+                }
+            }
+        }
+        return deviceData;
+    }
+
+    private static void readDeviceProfile(JsonParser parser, WebhookDeviceData deviceData) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val field = parser.currentName();
+            val token = parser.nextToken();
+            switch (field) {
+                case "deviceId", "device_id" -> {
+                    if (token == JsonToken.VALUE_NUMBER_INT) {
+                        deviceData.setDeviceId(parser.getLongValue());
+                    } else if (token == JsonToken.VALUE_STRING) {
+                        deviceData.setDeviceId(parseLong(parser.getText()));
+                    }
+                }
+                case "sn" -> deviceData.setSn(readText(parser));
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Flatten the TSL object the same way as {@link MscTslUtils#convertJsonNodeToExchangePayload}:
+     * null values and arrays are ignored, and nested fields are joined by '@'.
+     */
+    private static void readTslObject(JsonParser parser, @Nullable String parentPath, WebhookDeviceData deviceData) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val field = parser.currentName();
+            val path = parentPath == null ? field : parentPath + "@" + field;
+            val token = parser.nextToken();
+            switch (token) {
+                case START_OBJECT -> readTslObject(parser, path, deviceData);
+                // todo support array
+                case START_ARRAY -> parser.skipChildren();
+                case VALUE_STRING -> deviceData.addValue(path, parser.getText());
+                case VALUE_NUMBER_INT -> deviceData.addValue(path, parser.getNumberValue());
+                case VALUE_NUMBER_FLOAT -> deviceData.addValue(path, parser.getDoubleValue());
+                case VALUE_TRUE -> deviceData.addValue(path, Boolean.TRUE);
+                case VALUE_FALSE -> deviceData.addValue(path, Boolean.FALSE);
+                default -> {
+                    // null is ignored
+                }
+            }
+        }
+    }
+
+    private static boolean isTslDataType(@Nullable String type) {
+        return "PROPERTY".equalsIgnoreCase(type) || "EVENT".equalsIgnoreCase(type);
+    }
+
+    @Nullable
+    private static String readText(JsonParser parser) throws IOException {
+        val token = parser.currentToken();
+        if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.milesight.beaveriot.integration.msc.cluster
+
+import spock.lang.Specification
+
+class SyncPartitionerTest extends Specification {
+
+
+    def "given standalone node when calling isLocal then should own all devices"() {
+        given:
+        def partitioner = new SyncPartitioner(new InMemorySyncClusterCoordinator())
+
+        expect:
+        (0..<1000).every { partitioner.isLocal("SN" + it) }
+    }
+
+    def "given three nodes when calling isLocal then each device should be owned by exactly one node"() {
+        given:
+        def group = new InMemorySyncClusterCoordinator.Group()
+        def partitioners = ["node-a", "node-b", "node-c"].collect {
+            new SyncPartitioner(new InMemorySyncClusterCoordinator(group, it))
+        }
+        def identifiers = (0..<3000).collect { "SN" + it }
+
+        when:
+        def owned = partitioners.collect { partitioner -> identifiers.count { partitioner.isLocal(it) } }
+
+        then:
+        identifiers.every { identifier -> partitioners.count { it.isLocal(identifier) } == 1 }
+        owned.sum() == 3000
+        owned.every { it > 600 && it < 1400 }
+    }
+
+    def "given node leaves when rebalancing then only devices of the leaving node should move"() {
+        given:
+        def group = new InMemorySyncClusterCoordinator.Group()
+        def coordinatorC = new InMemorySyncClusterCoordinator(group, "node-c")
+        def partitionerA = new SyncPartitioner(new InMemorySyncClusterCoordinator(group, "node-a"))
+        def partitionerB = new SyncPartitioner(new InMemorySyncClusterCoordinator(group, "node-b"))
+        def partitionerC = new SyncPartitioner(coordinatorC)
+        def identifiers = (0..<3000).collect { "SN" + it }
+        def ownedByA = identifiers.findAll { partitionerA.isLocal(it) } as Set
+        def ownedByC = identifiers.findAll { partitionerC.isLocal(it) } as Set
+        def rebalanced = 0
+        partitionerA.addRebalanceListener { rebalanced++ }
+
+        when:
+        coordinatorC.leave()
+
+        then:
+        rebalanced == 1
+        identifiers.findAll { partitionerA.isLocal(it) }.containsAll(ownedByA)
+        ownedByC.every { partitionerA.isLocal(it) || partitionerB.isLocal(it) }
+        identifiers.every { partitionerA.isLocal(it) != partitionerB.isLocal(it) }
+    }
+
+}
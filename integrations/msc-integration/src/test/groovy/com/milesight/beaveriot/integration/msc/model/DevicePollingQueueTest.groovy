@@ -0,0 +1,63 @@
+package com.milesight.beaveriot.integration.msc.model
+
+import spock.lang.Specification
+
+class DevicePollingQueueTest extends Specification {
+
+    def queue = new DevicePollingQueue()
+
+    def "given devices with due times when calling poll then should return due devices in order"() {
+        given:
+        queue.offer(1001L, "SN1", 200L)
+        queue.offer(1002L, "SN2", 100L)
+        queue.offer(1003L, "SN3", 300L)
+
+        expect:
+        queue.poll(250L).identifier() == "SN2"
+        queue.poll(250L).identifier() == "SN1"
+        queue.poll(250L) == null
+        queue.size() == 1
+    }
+
+    def "given queued device when calling offer or schedule then should keep one entry per device"() {
+        given:
+        queue.offer(1001L, "SN1", 100L)
+
+        when:
+        def offered = queue.offer(1001L, "SN1", 50L)
+        queue.schedule(1001L, "SN1", 500L)
+
+        then:
+        !offered
+        queue.size() == 1
+        queue.poll(400L) == null
+        queue.poll(500L).dueAt() == 500L
+        queue.poll(500L) == null
+    }
+
+    def "given expedited device when calling poll then should jump ahead of due devices"() {
+        given:
+        queue.offer(1001L, "SN1", 100L)
+        queue.offer(1002L, "SN2", Long.MAX_VALUE)
+        queue.expedite(1002L, "SN2")
+        queue.schedule(1002L, "SN2", Long.MAX_VALUE)
+
+        expect:
+        with(queue.poll(100L)) {
+            identifier() == "SN2"
+            expedited()
+        }
+        queue.poll(100L).identifier() == "SN1"
+    }
+
+    def "given polling tiers when calling find then should match identifiers and prefixes"() {
+        given:
+        def tiers = [new PollingTier("critical", 30, ["6136A1234567"]), new PollingTier("meters", 3600, ["24E124*"])]
+
+        expect:
+        PollingTier.find(tiers, "6136A1234567").name() == "critical"
+        PollingTier.find(tiers, "24E124000001").name() == "meters"
+        PollingTier.find(tiers, "6136A1234568") == null
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.milesight.beaveriot.integration.msc.model
+
+import spock.lang.Specification
+
+class DeviceSyncStateTableTest extends Specification {
+
+
+    def "given random updates and removals when growing then should match a hash map"() {
+        given:
+        def table = new DeviceSyncStateTable(4)
+        def expected = [:]
+        def random = new Random(1)
+
+        when:
+        20000.times {
+            long deviceId = 1 + random.nextInt(3000)
+            if (random.nextBoolean()) {
+                table.register(deviceId, "SN" + deviceId)
+                table.setLastSyncTime(deviceId, it)
+                expected[deviceId] = (long) it
+            } else {
+                table.remove(deviceId)
+                expected.remove(deviceId)
+            }
+        }
+
+        then:
+        table.size() == expected.size()
+        (1L..3000L).every { table.getLastSyncTime(it) == (expected[it] ?: 0L) }
+    }
+
+    def "given states when writing and reading then should restore all states except flags"() {
+        given:
+        def table = new DeviceSyncStateTable()
+        table.register(1001L, "SN1")
+        table.setLastSyncTime(1001L, 1700000000000L)
+        table.setFingerprint(1001L, 42L)
+        table.setFlag(1001L, DeviceSyncStateTable.FLAG_IN_FLIGHT)
+        table.register(1002L, "SN2")
+        table.markWebhookReceived(1002L, 1700000001000L, 1700000000500L, 300000L, 3, 3, 0.2)
+        def bytes = new ByteArrayOutputStream()
+        table.writeTo(new DataOutputStream(bytes))
+
+        when:
+        def restored = new DeviceSyncStateTable()
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+
+        then:
+        restored.size() == 2
+        restored.getIdentifier(1001L) == "SN1"
+        restored.getLastSyncTime(1001L) == 1700000000000L
+        restored.getFingerprint(1001L) == 42L
+        restored.getLastWebhookReceivedTime(1002L) == 1700000001000L
+        restored.setFlag(1001L, DeviceSyncStateTable.FLAG_IN_FLIGHT)
+    }
+
+    def "given registered identifiers when renaming, removing and growing then should find device ids by identifier"() {
+        given:
+        def table = new DeviceSyncStateTable(4)
+        (1L..100L).each { table.register(it, "SN" + it) }
+
+        when:
+        table.register(7L, "SN7-NEW")
+        table.remove(8L)
+        table.register(9L, "SN10")
+        table.remove(10L)
+
+        then:
+        table.findDeviceId("SN7") == 0L
+        table.findDeviceId("SN7-NEW") == 7L
+        table.findDeviceId("SN8") == 0L
+        table.findDeviceId("SN10") == 9L
+        table.findDeviceId("SN100") == 100L
+    }
+
+    def "given removed device when calling setters then should not add it back"() {
+        given:
+        def table = new DeviceSyncStateTable()
+        table.register(1001L, "SN1")
+        table.setFlag(1001L, DeviceSyncStateTable.FLAG_IN_FLIGHT)
+
+        when:
+        table.remove(1001L)
+        table.setLastSyncTime(1001L, 1700000000000L)
+        table.setFingerprint(1001L, 42L)
+        def flagged = table.setFlag(1001L, DeviceSyncStateTable.FLAG_IN_FLIGHT)
+        table.clearFlag(1001L, DeviceSyncStateTable.FLAG_IN_FLIGHT)
+
+        then:
+        !flagged
+        table.size() == 0
+        !table.contains(1001L)
+        table.getLastSyncTime(1001L) == 0L
+        table.findDeviceId("SN1") == 0L
+    }
+
+    def "given device without identifier when writing and reading then should drop it"() {
+        given:
+        def table = new DeviceSyncStateTable()
+        table.register(1001L, "SN1")
+        table.markWebhookReceived(1002L, 1700000001000L, 1700000000500L, 300000L, 3, 3, 0.2)
+        def bytes = new ByteArrayOutputStream()
+        table.writeTo(new DataOutputStream(bytes))
+
+        when:
+        def restored = new DeviceSyncStateTable()
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        def devices = [:]
+        restored.forEachDevice { deviceId, identifier -> devices[deviceId] = identifier }
+
+        then:
+        restored.size() == 1
+        devices == [1001L: "SN1"]
+    }
+
+    def "given steady event cadence when an interval is much longer then should report the gap"() {
+        given:
+        def table = new DeviceSyncStateTable()
+        def minute = 60000L
+
+        expect:
+        (1..5).every { table.markWebhookReceived(1L, it * minute, it * minute, 5 * minute, 3, 3, 0.2) == -1 }
+        table.markWebhookReceived(1L, 30 * minute, 30 * minute, 5 * minute, 3, 3, 0.2) == 5 * minute
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.milesight.beaveriot.integration.msc.service
+
+import com.milesight.beaveriot.integration.msc.model.IntegrationStatus
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+class MscCircuitBreakerTest extends Specification {
+
+    def statusManager = Mock(MscIntegrationStatusManager)
+
+    def breaker = new MscCircuitBreaker()
+
+    def setup() {
+        breaker.mscMetrics = new MscMetrics(new SimpleMeterRegistry())
+        breaker.mscIntegrationStatusManager = statusManager
+    }
+
+    def "given consecutive failures when calling call then should open the circuit and fail fast"() {
+        given:
+        def calls = 0
+
+        when:
+        5.times {
+            try {
+                breaker.call("search_details") { calls++; throw new IOException("timeout") }
+            } catch (IOException ignored) {
+            }
+        }
+
+        then:
+        1 * statusManager.updateOpenapiStatus(IntegrationStatus.ERROR)
+        breaker.isAnyOpen()
+
+        when:
+        breaker.call("search_details") { calls++; "ok" }
+
+        then:
+        thrown(MscCircuitBreaker.CircuitOpenException)
+        calls == 5
+    }
+
+    def "given failures interleaved with successes when calling call then should keep the circuit closed"() {
+        when:
+        10.times {
+            try {
+                breaker.call("search_details") { throw new IOException("timeout") }
+            } catch (IOException ignored) {
+            }
+            breaker.call("search_details") { "ok" }
+        }
+
+        then:
+        0 * statusManager.updateOpenapiStatus(_)
+        !breaker.isAnyOpen()
+    }
+
+    def "given half-open circuit when calling call then should allow one trial and close on success"() {
+        given:
+        5.times {
+            try {
+                breaker.call("get_thing_specification") { throw new IOException("timeout") }
+            } catch (IOException ignored) {
+            }
+        }
+        breaker.endpointToCircuit.values()*.halfOpen()
+
+        when:
+        def result = breaker.call("get_thing_specification") { "ok" }
+
+        then:
+        result == "ok"
+        !breaker.isAnyOpen()
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.milesight.beaveriot.integration.msc.service
+
+import com.milesight.beaveriot.integration.msc.model.DeviceSyncStateTable
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class MscDeviceSyncStatesTest extends Specification {
+
+    @TempDir
+    Path directory
+
+    def "given saved snapshot when calling load then should restore devices and last device listing time"() {
+        given:
+        def file = directory.resolve("device-sync-states.bin")
+        def states = new MscDeviceSyncStates(file)
+        states.register(1001L, "SN1")
+        states.register(1002L, "SN2")
+        states.setFingerprint(1001L, 42L)
+        states.setLastSyncTime(1002L, 1700000000000L)
+        states.setLastDeviceListingTime(1700000001000L)
+        states.save()
+
+        when:
+        def loaded = new MscDeviceSyncStates(file)
+        loaded.load()
+        def devices = [:]
+        loaded.forEachDevice { deviceId, identifier -> devices[deviceId] = identifier }
+
+        then:
+        devices == [1001L: "SN1", 1002L: "SN2"]
+        loaded.getFingerprint(1001L) == 42L
+        loaded.getLastSyncTime(1002L) == 1700000000000L
+        loaded.lastDeviceListingTime == 1700000001000L
+    }
+
+    def "given snapshot written by older version when calling load then should restore devices without last device listing time"() {
+        given:
+        def file = directory.resolve("device-sync-states.bin")
+        def table = new DeviceSyncStateTable(16)
+        table.register(1001L, "SN1")
+        new DataOutputStream(Files.newOutputStream(file)).withCloseable { table.writeTo(it) }
+
+        when:
+        def loaded = new MscDeviceSyncStates(file)
+        loaded.load()
+
+        then:
+        loaded.findDeviceId("SN1") == 1001L
+        loaded.lastDeviceListingTime == 0L
+    }
+
+    def "given unmodified states when calling saveIfModified then should not write the file"() {
+        given:
+        def file = directory.resolve("device-sync-states.bin")
+        def states = new MscDeviceSyncStates(file)
+
+        when:
+        states.saveIfModified()
+
+        then:
+        !Files.exists(file)
+
+        when:
+        states.register(1001L, "SN1")
+        states.saveIfModified()
+
+        then:
+        Files.exists(file)
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.milesight.beaveriot.integration.msc.service
+
+import com.milesight.beaveriot.context.api.ExchangeFlowExecutor
+import com.milesight.beaveriot.context.integration.model.ExchangePayload
+import com.milesight.beaveriot.integration.msc.model.IntegrationStatus
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class MscIntegrationStatusManagerTest extends Specification {
+
+    def published = new CopyOnWriteArrayList<String>()
+
+    def exchangeFlowExecutor = Stub(ExchangeFlowExecutor) {
+        asyncExchangeUp(_ as ExchangePayload) >> { ExchangePayload payload -> published << payload.values().first() }
+        syncExchangeDown(_ as ExchangePayload) >> { ExchangePayload payload -> published << payload.values().first(); null }
+    }
+
+    def manager = new MscIntegrationStatusManager()
+
+    def setup() {
+        manager.exchangeFlowExecutor = exchangeFlowExecutor
+        manager.debounceMillis = 200
+    }
+
+    def "given same status reported repeatedly when calling updateWebhookStatus then should publish once"() {
+        when:
+        def previous = (1..100).collect { manager.updateWebhookStatus(IntegrationStatus.READY) }
+
+        then:
+        previous[0] == null
+        previous[1..-1].every { it == IntegrationStatus.READY }
+        manager.webhookStatus == IntegrationStatus.READY
+        published == ["READY"]
+    }
+
+    def "given flapping status when calling updateOpenapiStatus then should publish the latest status after debounce"() {
+        when:
+        manager.updateOpenapiStatus(IntegrationStatus.NOT_READY)
+        manager.updateOpenapiStatus(IntegrationStatus.ERROR)
+        manager.updateOpenapiStatus(IntegrationStatus.NOT_READY)
+        manager.updateOpenapiStatus(IntegrationStatus.READY)
+
+        then:
+        manager.openapiStatus == IntegrationStatus.READY
+        published == ["NOT_READY"]
+        new PollingConditions(timeout: 2).eventually {
+            assert published == ["NOT_READY", "READY"]
+        }
+    }
+
+    def "given status flapped back within debounce window when publishing then should not publish again"() {
+        when:
+        manager.updateWebhookStatus(IntegrationStatus.READY)
+        manager.updateWebhookStatus(IntegrationStatus.ERROR)
+        manager.updateWebhookStatus(IntegrationStatus.READY)
+        Thread.sleep(500)
+
+        then:
+        published == ["READY"]
+    }
+
+}
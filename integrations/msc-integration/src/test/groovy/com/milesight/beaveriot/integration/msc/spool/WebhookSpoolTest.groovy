@@ -0,0 +1,104 @@
+package com.milesight.beaveriot.integration.msc.spool
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.TimeUnit
+
+class WebhookSpoolTest extends Specification {
+
+    @TempDir
+    Path directory
+
+    def settings = WebhookSpoolSettings.builder()
+            .segmentBytes(1024)
+            .maxBytes(4096)
+            .fsyncPolicy(WebhookSpoolSettings.FsyncPolicy.PERIODIC)
+            .build()
+
+    def "given committed and uncommitted records when reopening spool then should replay uncommitted records only"() {
+        given:
+        def spool = new WebhookSpool(directory, settings)
+        (1..20).each { assert spool.append("body-$it".bytes) }
+        (1..5).each {
+            assert new String(spool.poll(1, TimeUnit.SECONDS)) == "body-$it"
+            spool.commit()
+        }
+        spool.close()
+
+        when:
+        def reopened = new WebhookSpool(directory, settings)
+        def replayed = drain(reopened)
+        reopened.close()
+
+        then:
+        replayed == (6..20).collect { "body-$it".toString() }
+    }
+
+    def "given full spool when appending then should reject until records are drained"() {
+        given:
+        def spool = new WebhookSpool(directory, settings)
+        def body = new byte[200]
+
+        when:
+        def appended = 0
+        while (spool.append(body)) {
+            appended++
+        }
+
+        then:
+        appended > 0
+        !spool.append(new byte[2048])
+
+        when:
+        drain(spool)
+        spool.close()
+        spool = new WebhookSpool(directory, settings)
+
+        then:
+        spool.append(body)
+
+        cleanup:
+        spool?.close()
+    }
+
+    def "given torn tail when reopening spool then should keep records before it"() {
+        given:
+        def spool = new WebhookSpool(directory, settings)
+        (1..3).each { spool.append("body-$it".bytes) }
+        spool.close()
+        def segment = Files.list(directory).filter { it.toString().endsWith(".seg") }.findFirst().get()
+        // a header of a record which was never written completely
+        FileChannel.open(segment, StandardOpenOption.WRITE).withCloseable {
+            it.write(ByteBuffer.allocate(8).putInt(100).putInt(12345).flip(), 3 * (8 + 6))
+        }
+
+        when:
+        def reopened = new WebhookSpool(directory, settings)
+        def replayed = drain(reopened)
+        def appended = reopened.append("body-4".bytes)
+        def next = new String(reopened.poll(1, TimeUnit.SECONDS))
+        reopened.close()
+
+        then:
+        replayed == ["body-1", "body-2", "body-3"]
+        appended
+        next == "body-4"
+    }
+
+    private static List<String> drain(WebhookSpool spool) {
+        def bodies = []
+        def body
+        while ((body = spool.poll(100, TimeUnit.MILLISECONDS)) != null) {
+            bodies << new String(body)
+            spool.commit()
+        }
+        return bodies
+    }
+
+}
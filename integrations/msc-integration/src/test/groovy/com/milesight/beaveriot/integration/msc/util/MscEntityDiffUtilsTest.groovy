@@ -0,0 +1,52 @@
+package com.milesight.beaveriot.integration.msc.util
+
+import com.milesight.beaveriot.context.integration.enums.AccessMod
+import com.milesight.beaveriot.context.integration.enums.EntityValueType
+import com.milesight.beaveriot.context.integration.model.EntityBuilder
+import spock.lang.Specification
+
+class MscEntityDiffUtilsTest extends Specification {
+
+
+    def "given same entities when calling diff then should be empty and keep existing instances"() {
+        given:
+        def existing = [property("temperature", "Temperature", [min: 1, max: 100]), property("humidity", "Humidity", [:])]
+        def generated = [property("temperature", "Temperature", [min: 1L, max: 100.0G]), property("humidity", "Humidity", null)]
+
+        when:
+        def diff = MscEntityDiffUtils.diff(existing, generated)
+
+        then:
+        diff.isEmpty()
+        diff.merged().size() == 2
+        diff.merged()[0].is(existing[0])
+        diff.merged()[1].is(existing[1])
+    }
+
+    def "given changed entities when calling diff then should report added, removed and changed keys"() {
+        given:
+        def existing = [property("temperature", "Temperature", [min: 1]), property("humidity", "Humidity", [:])]
+        def generated = [property("temperature", "Temperature", [min: 2]), property("battery", "Battery", [:])]
+
+        when:
+        def diff = MscEntityDiffUtils.diff(existing, generated)
+
+        then:
+        !diff.isEmpty()
+        diff.addedKeys() == [generated[1].key]
+        diff.removedKeys() == [existing[1].key]
+        diff.changedKeys() == [generated[0].key]
+        diff.merged()*.key == generated*.key
+        diff.merged()[0].is(generated[0])
+    }
+
+    private static property(String identifier, String name, Map<String, Object> attributes) {
+        return new EntityBuilder("msc-integration", "msc-integration.device.SN1")
+                .identifier(identifier)
+                .property(name, AccessMod.R)
+                .valueType(EntityValueType.LONG)
+                .attributes(attributes)
+                .build()
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.milesight.beaveriot.integration.msc.util
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+
+class MscWebhookBodyReaderTest extends Specification {
+
+
+    def "given device data when calling read then should flatten payload like convertJsonNodeToExchangePayload"() {
+        given:
+        def payload = '{"temperature":21.5,"humidity":40,"data":{"name":"x","empty":null,"list":[1,2],"inner":{"on":true}}}'
+        def body = """[{"eventId":"e1","eventCreatedTime":1700000000,"eventType":"device_data","data":{
+                "deviceProfile":{"deviceId":123,"sn":"SN1","name":"Device"},"type":"PROPERTY","payload":${payload}}}]"""
+        def expected = MscTslUtils.convertJsonNodeToExchangePayload("device", new ObjectMapper().readTree(payload))
+
+        when:
+        def events = MscWebhookBodyReader.read(body.bytes)
+        def deviceData = events[0].deviceData()
+        def actual = MscTslUtils.convertWebhookDeviceDataToExchangePayload("device", deviceData)
+
+        then:
+        events.size() == 1
+        events[0].eventId() == "e1"
+        events[0].eventCreatedTime() == 1700000000L
+        deviceData.deviceId == 123L
+        deviceData.sn == "SN1"
+        actual.keySet() == expected.keySet()
+        actual.every { key, value -> value.toString() == expected[key].asText() }
+    }
+
+    def "given ignored event type and data before event type when calling read then should only decode device data"() {
+        given:
+        def body = '''[
+                {"eventType":"other","data":{"deviceProfile":{"sn":"SN1"},"type":"PROPERTY","payload":{"a":1}}},
+                {"data":{"payload":{"level":3},"tslId":"alarm","type":"EVENT","deviceProfile":{"sn":"SN2","deviceId":"77"}},"eventType":"device_data"},
+                {"eventType":"device_data","data":{"deviceProfile":{"sn":"SN3"},"type":"SERVICE","payload":{"a":1}}}
+        ]'''
+
+        when:
+        def events = MscWebhookBodyReader.read(body.bytes)
+
+        then:
+        events.size() == 3
+        events[0].deviceData() == null
+        events[1].deviceData().deviceId == 77L
+        MscTslUtils.convertWebhookDeviceDataToExchangePayload("device", events[1].deviceData()) == ["device.alarm@level": 3]
+        events[2].deviceData().payloadPresent
+        events[2].deviceData().size() == 0
+    }
+
+    def "given malformed body when calling read then should throw io exception"() {
+        when:
+        MscWebhookBodyReader.read(body.bytes)
+
+        then:
+        thrown(IOException)
+
+        where:
+        body << ['[1]', '"text"', '[{"eventType":']
+    }
+
+}
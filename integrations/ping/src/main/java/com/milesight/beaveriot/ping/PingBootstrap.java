@@ -2,10 +2,14 @@ package com.milesight.beaveriot.ping;
 
 import com.milesight.beaveriot.context.integration.bootstrap.IntegrationBootstrap;
 import com.milesight.beaveriot.context.integration.model.Integration;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
 public class PingBootstrap implements IntegrationBootstrap {
+    @Autowired
+    private PingMonitorService pingMonitorService;
+
     @Override
     public void onPrepared(Integration integration) {
         // do nothing
@@ -13,11 +17,11 @@ public class PingBootstrap implements IntegrationBootstrap {
 
     @Override
     public void onStarted(Integration integrationConfig) {
-        // do nothing
+        pingMonitorService.init();
     }
 
     @Override
     public void onDestroy(Integration integration) {
-        // do nothing
+        pingMonitorService.stop();
     }
 }
@@ -5,7 +5,56 @@ public class PingConstants {
 
     public static final String INTEGRATION_ID = "ping";
 
+    public static final String MONITOR_KEY = INTEGRATION_ID + ".integration.monitor";
+
+    public static final long DEFAULT_MONITOR_PERIOD_SECONDS = 60;
+
+    // bounds of the monitor period setting
+    public static final long MIN_MONITOR_PERIOD_SECONDS = 10;
+
+    public static final long MAX_MONITOR_PERIOD_SECONDS = 86400;
+
+    // the interval is never shortened below this value, even right after a state change
+    public static final long MIN_PROBE_INTERVAL_SECONDS = 5;
+
+    // devices which stay offline back off up to period * MAX_OFFLINE_BACKOFF_FACTOR
+    public static final int MAX_OFFLINE_BACKOFF_FACTOR = 8;
+
+    // delay changes smaller than both thresholds are not reported by the monitor
+    public static final long SIGNIFICANT_DELAY_CHANGE_MILLIS = 20;
+
+    public static final double SIGNIFICANT_DELAY_CHANGE_RATIO = 0.5;
+
     public enum DeviceStatus {
         ONLINE, OFFLINE;
     }
+
+    public enum ProbeType {
+        ICMP, TCP, UDP;
+
+        /**
+         * @return the probe type of the name, case-insensitive, or null if unknown
+         */
+        public static ProbeType parse(String name) {
+            if (name == null) {
+                return null;
+            }
+            for (ProbeType type : values()) {
+                if (type.name().equalsIgnoreCase(name.trim())) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class AdditionalDataName {
+        private AdditionalDataName() {}
+
+        public static final String IP = "ip";
+
+        public static final String PROBE_TYPE = "probe_type";
+
+        public static final String PORT = "port";
+    }
 }
@@ -0,0 +1,74 @@
+package com.milesight.beaveriot.ping;
+
+import com.milesight.beaveriot.ping.probe.PingTarget;
+import lombok.Getter;
+
+/**
+ * Monitoring state of a single device.
+ * <p>
+ * The probe interval tightens to the minimum right after a state change and then doubles on every stable probe,
+ * up to the base period for online devices and up to {@link PingConstants#MAX_OFFLINE_BACKOFF_FACTOR} times the
+ * base period for devices that stay offline.
+ */
+@Getter
+public class PingDeviceState {
+    private final PingTarget target;
+
+    private final PingKeyIndex.DeviceKeys keys;
+
+    private long intervalMillis;
+
+    private PingConstants.DeviceStatus status;
+
+    private Long delay;
+
+    // set to false when the device is removed, the scheduled probe will then be dropped
+    private volatile boolean active = true;
+
+    public PingDeviceState(PingTarget target, PingKeyIndex.DeviceKeys keys, long baseIntervalMillis) {
+        this.target = target;
+        this.keys = keys;
+        this.intervalMillis = baseIntervalMillis;
+    }
+
+    /**
+     * Record a probe result and compute the next interval.
+     *
+     * @return true if the result should be reported
+     */
+    public synchronized boolean update(Long newDelay, long baseIntervalMillis) {
+        PingConstants.DeviceStatus newStatus = newDelay != null ? PingConstants.DeviceStatus.ONLINE : PingConstants.DeviceStatus.OFFLINE;
+        long minIntervalMillis = Math.min(baseIntervalMillis, PingConstants.MIN_PROBE_INTERVAL_SECONDS * 1000);
+        boolean statusChanged = newStatus != status;
+        boolean report = statusChanged || isSignificantDelayChange(delay, newDelay);
+
+        if (statusChanged) {
+            intervalMillis = minIntervalMillis;
+        } else {
+            long maxIntervalMillis = newStatus == PingConstants.DeviceStatus.ONLINE
+                    ? baseIntervalMillis
+                    : baseIntervalMillis * PingConstants.MAX_OFFLINE_BACKOFF_FACTOR;
+            intervalMillis = Math.min(Math.max(intervalMillis * 2, minIntervalMillis), maxIntervalMillis);
+        }
+
+        status = newStatus;
+        if (report) {
+            // only remember reported delays, so slow drifts are reported once they become significant
+            delay = newDelay;
+        }
+        return report;
+    }
+
+    public void deactivate() {
+        active = false;
+    }
+
+    private static boolean isSignificantDelayChange(Long previous, Long current) {
+        if (previous == null || current == null) {
+            return (previous == null) != (current == null);
+        }
+        long diff = Math.abs(current - previous);
+        return diff >= PingConstants.SIGNIFICANT_DELAY_CHANGE_MILLIS
+                && diff >= previous * PingConstants.SIGNIFICANT_DELAY_CHANGE_RATIO;
+    }
+}
@@ -20,6 +20,15 @@ public class PingIntegrationEntities extends ExchangePayload {
     @Entity(type = EntityType.PROPERTY, name = "Detect Status", identifier = "detect_status", attributes = @Attribute(enumClass = DetectStatus.class), accessMod = AccessMod.R)
     private Long detectStatus;
 
+    @Entity(type = EntityType.SERVICE, name = "Cancel Benchmark", identifier = "cancel_benchmark")
+    private String cancelBenchmark;
+
+    @Entity(type = EntityType.PROPERTY, name = "Benchmark Progress", identifier = "benchmark_progress", attributes = @Attribute(min = 0, max = 100), accessMod = AccessMod.R)
+    private Long benchmarkProgress;
+
+    @Entity(type = EntityType.PROPERTY, name = "Background Monitor", identifier = "monitor")
+    private Monitor monitor;
+
     @Entity(type = EntityType.SERVICE, identifier = "add_device")
     private AddDevice addDevice;
 
@@ -32,6 +41,23 @@ public class PingIntegrationEntities extends ExchangePayload {
     public static class AddDevice extends ExchangePayload {
         @Entity
         private String ip;
+
+        @Entity(attributes = @Attribute(enumClass = PingConstants.ProbeType.class))
+        private String probeType;
+
+        @Entity(attributes = @Attribute(min = 1, max = 65535))
+        private Long port;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    @Entities
+    public static class Monitor extends ExchangePayload {
+        @Entity(name = "Enabled", identifier = "enabled")
+        private Boolean enabled;
+
+        @Entity(name = "Probe Period", identifier = "period", attributes = @Attribute(min = 10, max = 86400))
+        private Long period;
     }
 
     public enum DetectStatus {
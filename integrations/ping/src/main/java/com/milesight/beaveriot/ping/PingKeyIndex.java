@@ -0,0 +1,52 @@
+package com.milesight.beaveriot.ping;
+
+import com.milesight.beaveriot.context.integration.model.Device;
+import com.milesight.beaveriot.context.integration.model.Entity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Entity keys of ping devices, resolved once per device instead of scanning the entities on every sweep.
+ */
+@Component
+public class PingKeyIndex {
+    private final Map<String, DeviceKeys> deviceKeyToEntityKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @return the entity keys of the device, or null if the device has no status entity
+     */
+    public DeviceKeys resolve(Device device) {
+        DeviceKeys keys = deviceKeyToEntityKeys.get(device.getKey());
+        if (keys != null) {
+            return keys;
+        }
+        String statusKey = null;
+        String delayKey = null;
+        for (Entity entity : device.getEntities()) {
+            if (entity.getIdentifier().equals("status")) {
+                statusKey = entity.getKey();
+            } else if (entity.getIdentifier().equals("delay")) {
+                delayKey = entity.getKey();
+            }
+        }
+        if (statusKey == null) {
+            return null;
+        }
+        keys = new DeviceKeys(statusKey, delayKey);
+        deviceKeyToEntityKeys.put(device.getKey(), keys);
+        return keys;
+    }
+
+    public void invalidate(String deviceKey) {
+        deviceKeyToEntityKeys.remove(deviceKey);
+    }
+
+    public void clear() {
+        deviceKeyToEntityKeys.clear();
+    }
+
+    public record DeviceKeys(String statusKey, String delayKey) {
+    }
+}
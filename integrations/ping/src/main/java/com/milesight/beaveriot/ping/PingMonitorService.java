@@ -0,0 +1,192 @@
+package com.milesight.beaveriot.ping;
+
+import com.milesight.beaveriot.context.api.DeviceServiceProvider;
+import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
+import com.milesight.beaveriot.context.integration.model.Device;
+import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
+import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
+import com.milesight.beaveriot.eventbus.api.Event;
+import com.milesight.beaveriot.ping.probe.PingProber;
+import com.milesight.beaveriot.ping.probe.PingTarget;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Background monitoring of ping devices.
+ * <p>
+ * Every device is probed on its own adaptive interval (see {@link PingDeviceState}). The first probes are spread evenly
+ * over the period and all probes are scheduled on a {@link TimingWheel}, so the probe load stays flat instead of bursting.
+ * Only status changes and significant delay changes are sent to the exchange flow, batched by {@link PingResultSink}.
+ */
+@Service
+@Slf4j
+public class PingMonitorService {
+    private static final long TICK_MILLIS = 100;
+
+    private static final int WHEEL_SIZE = 512;
+
+    @Autowired
+    private DeviceServiceProvider deviceServiceProvider;
+
+    @Autowired
+    private EntityValueServiceProvider entityValueServiceProvider;
+
+    @Autowired
+    private PingProber pingProber;
+
+    @Autowired
+    private PingKeyIndex pingKeyIndex;
+
+    @Autowired
+    private PingResultSink pingResultSink;
+
+    private final Map<String, PingDeviceState> deviceStates = new ConcurrentHashMap<>();
+
+    // probes are asynchronous, this thread only starts them and reconciles the devices
+    private final ExecutorService monitorExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ping-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TimingWheel timingWheel = new TimingWheel(TICK_MILLIS, WHEEL_SIZE, monitorExecutor);
+
+    private boolean enabled = false;
+
+    private long periodMillis = PingConstants.DEFAULT_MONITOR_PERIOD_SECONDS * 1000;
+
+    @EventSubscribe(payloadKeyExpression = PingConstants.MONITOR_KEY + ".*", eventType = ExchangeEvent.EventType.DOWN)
+    public void onMonitorSettingsUpdate(Event<PingIntegrationEntities.Monitor> event) {
+        PingIntegrationEntities.Monitor settings = event.getPayload();
+        // fields which are absent from the payload keep their current value
+        if (settings.getEnabled() != null) {
+            enabled = settings.getEnabled();
+        }
+        if (settings.getPeriod() != null) {
+            periodMillis = toPeriodMillis(settings.getPeriod());
+        }
+        restart();
+    }
+
+    public void init() {
+        PingIntegrationEntities.Monitor settings = entityValueServiceProvider.findValuesByKey(PingConstants.MONITOR_KEY, PingIntegrationEntities.Monitor.class);
+        if (settings == null || settings.isEmpty()) {
+            log.info("Monitor settings not found");
+            return;
+        }
+        enabled = Boolean.TRUE.equals(settings.getEnabled());
+        if (settings.getPeriod() != null) {
+            periodMillis = toPeriodMillis(settings.getPeriod());
+        }
+        start();
+    }
+
+    public synchronized void start() {
+        if (!enabled || timingWheel.isRunning()) {
+            return;
+        }
+        timingWheel.start();
+        reconcileDevices(timingWheel.getGeneration());
+        log.info("Ping monitor started, period: {}ms", periodMillis);
+    }
+
+    public synchronized void stop() {
+        timingWheel.stop();
+        deviceStates.values().forEach(PingDeviceState::deactivate);
+        deviceStates.clear();
+        pingResultSink.flush();
+        log.info("Ping monitor stopped");
+    }
+
+    public synchronized void restart() {
+        stop();
+        start();
+    }
+
+    /**
+     * Sync the monitored devices with the stored ones, then schedule the next reconciliation.
+     * New devices are spread evenly over one period.
+     * <p>
+     * Synchronized with start and stop, and the chain of a previous run of the wheel drops out at its next reconciliation.
+     */
+    private synchronized void reconcileDevices(long generation) {
+        if (!timingWheel.isRunning(generation)) {
+            return;
+        }
+        try {
+            List<Device> devices = deviceServiceProvider.findAll(PingConstants.INTEGRATION_ID);
+            Set<String> deviceKeys = devices.stream().map(Device::getKey).collect(Collectors.toSet());
+            deviceStates.entrySet().removeIf(entry -> {
+                if (deviceKeys.contains(entry.getKey())) {
+                    return false;
+                }
+                entry.getValue().deactivate();
+                return true;
+            });
+
+            List<Device> newDevices = devices.stream()
+                    .filter(device -> !deviceStates.containsKey(device.getKey()))
+                    .toList();
+            for (int i = 0; i < newDevices.size(); i++) {
+                PingDeviceState state = createState(newDevices.get(i));
+                if (state == null) {
+                    continue;
+                }
+                deviceStates.put(newDevices.get(i).getKey(), state);
+                timingWheel.schedule(() -> probe(state), periodMillis * i / newDevices.size());
+            }
+        } catch (Exception e) {
+            log.error("[Monitor Reconcile Error] " + e);
+        }
+        timingWheel.schedule(() -> reconcileDevices(generation), periodMillis);
+    }
+
+    /**
+     * Clamp the period to the bounds of the monitor settings
+     */
+    static long toPeriodMillis(long periodSeconds) {
+        long clamped = Math.min(Math.max(periodSeconds, PingConstants.MIN_MONITOR_PERIOD_SECONDS), PingConstants.MAX_MONITOR_PERIOD_SECONDS);
+        if (clamped != periodSeconds) {
+            log.warn("[Monitor] Period " + periodSeconds + "s out of range, use " + clamped + "s");
+        }
+        return clamped * 1000;
+    }
+
+    private PingDeviceState createState(Device device) {
+        PingTarget target = PingTarget.fromAdditional(device.getAdditional());
+        PingKeyIndex.DeviceKeys keys = pingKeyIndex.resolve(device);
+        if (target.ip() == null || keys == null) {
+            log.warn("[Monitor] Invalid device: " + device.getKey());
+            return null;
+        }
+        return new PingDeviceState(target, keys, periodMillis);
+    }
+
+    private void probe(PingDeviceState state) {
+        if (!state.isActive() || !timingWheel.isRunning()) {
+            return;
+        }
+        pingProber.probe(state.getTarget()).whenComplete((delay, throwable) -> {
+            try {
+                if (state.update(delay, periodMillis)) {
+                    pingResultSink.accept(state.getKeys(), state.getStatus(), delay);
+                }
+            } catch (Exception e) {
+                log.error("[Monitor Probe Error] " + e);
+            } finally {
+                if (state.isActive()) {
+                    timingWheel.schedule(() -> probe(state), state.getIntervalMillis());
+                }
+            }
+        });
+    }
+}
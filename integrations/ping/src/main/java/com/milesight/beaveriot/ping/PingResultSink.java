@@ -0,0 +1,83 @@
+package com.milesight.beaveriot.ping;
+
+import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
+import com.milesight.beaveriot.context.integration.model.ExchangePayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges probe results of many devices into shared exchange payloads.
+ * <p>
+ * A payload is sent through {@link ExchangeFlowExecutor#asyncExchangeDown} once it holds {@link #MAX_BATCH_ENTRIES}
+ * values, or at the latest {@link #FLUSH_INTERVAL_MILLIS} after its first value was added.
+ */
+@Slf4j
+@Component
+public class PingResultSink {
+    private static final int MAX_BATCH_ENTRIES = 500;
+
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    @Autowired
+    private ExchangeFlowExecutor exchangeFlowExecutor;
+
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ping-result-sink");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ExchangePayload buffer = new ExchangePayload();
+
+    private boolean flushScheduled = false;
+
+    public void accept(PingKeyIndex.DeviceKeys keys, PingConstants.DeviceStatus status, Long delay) {
+        ExchangePayload full = null;
+        synchronized (this) {
+            buffer.put(keys.statusKey(), status.ordinal());
+            if (keys.delayKey() != null) {
+                buffer.put(keys.delayKey(), delay);
+            }
+            if (buffer.size() >= MAX_BATCH_ENTRIES) {
+                full = swap();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                flushScheduler.schedule(this::flush, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            emit(full);
+        }
+    }
+
+    public void flush() {
+        ExchangePayload payload;
+        synchronized (this) {
+            flushScheduled = false;
+            if (buffer.isEmpty()) {
+                return;
+            }
+            payload = swap();
+        }
+        emit(payload);
+    }
+
+    private ExchangePayload swap() {
+        ExchangePayload payload = buffer;
+        buffer = new ExchangePayload();
+        return payload;
+    }
+
+    private void emit(ExchangePayload payload) {
+        try {
+            exchangeFlowExecutor.asyncExchangeDown(payload);
+        } catch (Exception e) {
+            log.error("[Result Sink Error] " + e);
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.milesight.beaveriot.ping;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.milesight.beaveriot.context.api.DeviceServiceProvider;
-import com.milesight.beaveriot.context.api.EntityValueServiceProvider;
 import com.milesight.beaveriot.context.api.ExchangeFlowExecutor;
 import com.milesight.beaveriot.context.integration.enums.AccessMod;
 import com.milesight.beaveriot.context.integration.enums.EntityValueType;
@@ -10,21 +8,28 @@ import com.milesight.beaveriot.context.integration.model.*;
 import com.milesight.beaveriot.context.integration.model.event.ExchangeEvent;
 import com.milesight.beaveriot.eventbus.annotations.EventSubscribe;
 import com.milesight.beaveriot.eventbus.api.Event;
+import com.milesight.beaveriot.ping.probe.PingProber;
+import com.milesight.beaveriot.ping.probe.PingTarget;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
-import java.io.IOException;
-import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
 public class PingService {
+    private static final String DETECT_STATUS_KEY = PingConstants.INTEGRATION_ID + ".integration.detect_status";
+
+    private static final String BENCHMARK_PROGRESS_KEY = PingConstants.INTEGRATION_ID + ".integration.benchmark_progress";
+
     @Autowired
     private DeviceServiceProvider deviceServiceProvider;
 
@@ -32,13 +37,41 @@ public class PingService {
     private ExchangeFlowExecutor exchangeFlowExecutor;
 
     @Autowired
-    private EntityValueServiceProvider entityValueServiceProvider;
+    private PingKeyIndex pingKeyIndex;
+
+    @Autowired
+    private PingResultSink pingResultSink;
+
+    @Autowired
+    private PingProber pingProber;
+
+    @Autowired
+    private PingSweepCoordinator pingSweepCoordinator;
 
     @EventSubscribe(payloadKeyExpression = PingConstants.INTEGRATION_ID + ".integration.add_device.*", eventType = ExchangeEvent.EventType.DOWN)
     public void onAddDevice(Event<PingIntegrationEntities.AddDevice> event) {
         String deviceName = event.getPayload().getContext("device_name", "Device Name");
         String ip = event.getPayload().getIp();
-
+        String probeTypeName = event.getPayload().getProbeType();
+        PingConstants.ProbeType probeType = probeTypeName == null || probeTypeName.isBlank()
+                ? PingConstants.ProbeType.ICMP
+                : PingConstants.ProbeType.parse(probeTypeName);
+        if (probeType == null) {
+            log.warn("[Add Device] Invalid probe type '" + probeTypeName + "', expected one of "
+                    + Arrays.toString(PingConstants.ProbeType.values()) + ": " + ip);
+            return;
+        }
+        Long port = event.getPayload().getPort();
+        if (probeType != PingConstants.ProbeType.ICMP && port == null) {
+            log.warn("[Add Device] Port is required by " + probeType + " probe: " + ip);
+            return;
+        }
+        Map<String, Object> additional = new HashMap<>();
+        additional.put(PingConstants.AdditionalDataName.IP, ip);
+        additional.put(PingConstants.AdditionalDataName.PROBE_TYPE, probeType.name());
+        if (port != null) {
+            additional.put(PingConstants.AdditionalDataName.PORT, port.intValue());
+        }
 
         Entity statusEntity = new EntityBuilder(PingConstants.INTEGRATION_ID)
                 .identifier("status")
@@ -56,7 +89,7 @@ public class PingService {
         Device device = new DeviceBuilder(PingConstants.INTEGRATION_ID)
                 .name(deviceName)
                 .identifier(ip.replace(".", "_"))
-                .additional(Map.of("ip", ip))
+                .additional(additional)
                 .entities(List.of(statusEntity, delayEntity))
                 .build();
 
@@ -66,76 +99,79 @@ public class PingService {
     @EventSubscribe(payloadKeyExpression = PingConstants.INTEGRATION_ID + ".integration.delete_device", eventType = ExchangeEvent.EventType.DOWN)
     public void onDeleteDevice(Event<ExchangePayload> event) {
         Device device = (Device) event.getPayload().getContext("device");
+        pingKeyIndex.invalidate(device.getKey());
         deviceServiceProvider.deleteById(device.getId());
     }
 
     @EventSubscribe(payloadKeyExpression = PingConstants.INTEGRATION_ID + ".integration.benchmark", eventType = ExchangeEvent.EventType.DOWN)
     @Async
     public void benchmark(Event<PingIntegrationEntities> event) {
-        // mark benchmark starting
-        String detectStatusKey = PingConstants.INTEGRATION_ID + ".integration.detect_status";
-        JsonNode detectStatusNode = entityValueServiceProvider.findValueByKey(detectStatusKey);
-        if (detectStatusNode.isNull() || detectStatusNode.asLong() == PingIntegrationEntities.DetectStatus.DETECTING.ordinal()) {
-            log.warn("[WARNING] Benchmark running");
-            return;
-        }
-
+        // concurrent triggers join the running sweep instead of starting another one
         try {
-            doBenchmark(detectStatusKey);
+            PingSweepCoordinator.SweepResult result = pingSweepCoordinator.trigger(this::runSweep).join();
+            log.info("[Benchmark Done] total: " + result.total() + ", online: " + result.onlineCount()
+                    + ", offline: " + result.offlineCount() + ", cancelled: " + result.cancelled());
         } catch (Exception e) {
             log.error("[Benchmark Error] " + e);
+        }
+    }
+
+    @EventSubscribe(payloadKeyExpression = PingConstants.INTEGRATION_ID + ".integration.cancel_benchmark", eventType = ExchangeEvent.EventType.DOWN)
+    public void cancelBenchmark(Event<PingIntegrationEntities> event) {
+        if (!pingSweepCoordinator.cancel()) {
+            log.warn("[WARNING] No benchmark running");
+        }
+    }
+
+    private PingSweepCoordinator.SweepResult runSweep(PingSweepCoordinator.Sweep sweep) {
+        try {
+            return doBenchmark(sweep);
         } finally {
             // mark benchmark done
             ExchangePayload donePayload = new ExchangePayload();
-            donePayload.put(detectStatusKey, PingIntegrationEntities.DetectStatus.STANDBY.ordinal());
+            donePayload.put(DETECT_STATUS_KEY, PingIntegrationEntities.DetectStatus.STANDBY.ordinal());
+            donePayload.put(BENCHMARK_PROGRESS_KEY, sweep.getProgress());
             exchangeFlowExecutor.syncExchangeUp(donePayload);
         }
     }
 
-    public void doBenchmark(String detectStatusKey) {
-        exchangeFlowExecutor.syncExchangeDown(new ExchangePayload(Map.of(detectStatusKey, PingIntegrationEntities.DetectStatus.DETECTING.ordinal())));
-        int timeout = 2000;
+    public PingSweepCoordinator.SweepResult doBenchmark(PingSweepCoordinator.Sweep sweep) {
+        ExchangePayload startPayload = new ExchangePayload();
+        startPayload.put(DETECT_STATUS_KEY, PingIntegrationEntities.DetectStatus.DETECTING.ordinal());
+        startPayload.put(BENCHMARK_PROGRESS_KEY, 0);
+        exchangeFlowExecutor.syncExchangeDown(startPayload);
 
-        // start pinging
+        // start pinging, all probes are in flight at the same time
         List<Device> devices = deviceServiceProvider.findAll(PingConstants.INTEGRATION_ID);
-        AtomicReference<Long> activeCount = new AtomicReference<>(0L);
-        AtomicReference<Long> inactiveCount = new AtomicReference<>(0L);
-
-        devices.forEach(device -> {
-            Long delay = null;
-            String ip = (String) device.getAdditional().get("ip");
-            try {
-                long startTimestamp = System.currentTimeMillis();
-                InetAddress inet = InetAddress.getByName(ip);
-                if (inet.isReachable(timeout)) {
-                    delay = System.currentTimeMillis() - startTimestamp;
-                }
-            } catch (IOException e) {
-                log.warn("[Not reachable]: " + ip);
-            }
-
-            int deviceStatus = PingConstants.DeviceStatus.OFFLINE.ordinal();
-            if (delay != null) {
-                activeCount.updateAndGet(v -> v + 1);
-                deviceStatus = PingConstants.DeviceStatus.ONLINE.ordinal();
-            } else {
-                inactiveCount.updateAndGet(v -> v + 1);
-            }
-
-            // Device have only one entity
-            ExchangePayload exchangePayload = new ExchangePayload();
-            final int fDeviceStatus = deviceStatus;
-            final Long fDelay = delay;
-            device.getEntities().forEach(entity -> {
-                if (entity.getIdentifier().equals("status")) {
-                    exchangePayload.put(entity.getKey(), fDeviceStatus);
-                } else if (entity.getIdentifier().equals("delay")) {
-                    exchangePayload.put(entity.getKey(), fDelay);
-                }
-            });
-
-            Assert.notEmpty(exchangePayload, "Exchange should not be empty!");
-            exchangeFlowExecutor.asyncExchangeDown(exchangePayload);
-        });
+        sweep.start(devices.size());
+        AtomicLong activeCount = new AtomicLong(0L);
+        AtomicLong inactiveCount = new AtomicLong(0L);
+
+        CompletableFuture<?>[] probes = devices.stream().map(device -> pingProber.probe(PingTarget.fromAdditional(device.getAdditional()))
+                .thenAccept(delay -> {
+                    if (sweep.isCancelled()) {
+                        return;
+                    }
+                    PingConstants.DeviceStatus deviceStatus = PingConstants.DeviceStatus.OFFLINE;
+                    if (delay != null) {
+                        activeCount.incrementAndGet();
+                        deviceStatus = PingConstants.DeviceStatus.ONLINE;
+                    } else {
+                        inactiveCount.incrementAndGet();
+                    }
+
+                    PingKeyIndex.DeviceKeys keys = pingKeyIndex.resolve(device);
+                    Assert.notNull(keys, "Device status entity should not be null!");
+                    pingResultSink.accept(keys, deviceStatus, delay);
+
+                    int progress = sweep.itemCompleted();
+                    if (progress >= 0) {
+                        exchangeFlowExecutor.asyncExchangeUp(ExchangePayload.create(BENCHMARK_PROGRESS_KEY, progress));
+                    }
+                }))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.anyOf(CompletableFuture.allOf(probes), sweep.getCancelSignal()).join();
+        pingResultSink.flush();
+        return new PingSweepCoordinator.SweepResult(devices.size(), activeCount.get(), inactiveCount.get(), sweep.isCancelled());
     }
 }
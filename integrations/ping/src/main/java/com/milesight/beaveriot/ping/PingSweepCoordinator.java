@@ -0,0 +1,120 @@
+package com.milesight.beaveriot.ping;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Single-flight coordinator of benchmark sweeps.
+ * <p>
+ * The state moves from IDLE (no sweep) to RUNNING with a compare-and-set, and back to IDLE once the sweep is done.
+ * Triggers arriving while a sweep is running join its result instead of starting another sweep.
+ */
+@Component
+public class PingSweepCoordinator {
+    private final AtomicReference<Sweep> running = new AtomicReference<>();
+
+    /**
+     * Run the task as a new sweep, or join the running one.
+     */
+    public CompletableFuture<SweepResult> trigger(Function<Sweep, SweepResult> task) {
+        while (true) {
+            Sweep current = running.get();
+            if (current != null) {
+                return current.result;
+            }
+            Sweep sweep = new Sweep();
+            if (!running.compareAndSet(null, sweep)) {
+                continue;
+            }
+            SweepResult result = null;
+            Throwable error = null;
+            try {
+                result = task.apply(sweep);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                // back to IDLE before completing, so callbacks of the result may trigger a new sweep
+                running.compareAndSet(sweep, null);
+            }
+            if (error != null) {
+                sweep.result.completeExceptionally(error);
+            } else {
+                sweep.result.complete(result);
+            }
+            return sweep.result;
+        }
+    }
+
+    /**
+     * @return false if no sweep is running
+     */
+    public boolean cancel() {
+        Sweep sweep = running.get();
+        if (sweep == null) {
+            return false;
+        }
+        sweep.cancel();
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get() != null;
+    }
+
+    public static class Sweep {
+        private final CompletableFuture<SweepResult> result = new CompletableFuture<>();
+
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        // completed when the sweep is cancelled, so the sweep can stop waiting for in flight probes
+        @Getter
+        private final CompletableFuture<Void> cancelSignal = new CompletableFuture<>();
+
+        private final AtomicInteger completed = new AtomicInteger(0);
+
+        @Getter
+        private volatile int total = 0;
+
+        public void start(int total) {
+            this.total = total;
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        private void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                cancelSignal.complete(null);
+            }
+        }
+
+        /**
+         * Count a finished item.
+         *
+         * @return the new progress percentage if it moved to another step of ten percent, otherwise -1
+         */
+        public int itemCompleted() {
+            int done = completed.incrementAndGet();
+            int percent = getProgress(done);
+            return percent / 10 != getProgress(done - 1) / 10 ? percent : -1;
+        }
+
+        public int getProgress() {
+            return getProgress(completed.get());
+        }
+
+        private int getProgress(int done) {
+            return total == 0 ? 100 : (int) (done * 100L / total);
+        }
+    }
+
+    public record SweepResult(int total, long onlineCount, long offlineCount, boolean cancelled) {
+    }
+}
@@ -0,0 +1,144 @@
+package com.milesight.beaveriot.ping;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel driven by a single tick thread.
+ * <p>
+ * Tasks are bucketed by their due tick, so scheduling and expiring are O(1) no matter how many devices are monitored.
+ * Expired tasks are handed over to the given executor, the tick thread itself never runs probes.
+ */
+@Slf4j
+public class TimingWheel {
+
+    private final long tickMillis;
+
+    private final Queue<Timeout>[] slots;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    private final Executor taskExecutor;
+
+    private ScheduledExecutorService ticker;
+
+    private long tick = 0;
+
+    // incremented on every start, so task chains of a previous run can tell they are stale
+    private long generation = 0;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, Executor taskExecutor) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize should be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.taskExecutor = taskExecutor;
+        this.slots = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+    }
+
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        generation++;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ping-timing-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::onTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            try {
+                // slots are only touched by the tick thread, wait for it before clearing them
+                ticker.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ticker = null;
+        }
+        pending.clear();
+        for (Queue<Timeout> slot : slots) {
+            slot.clear();
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return ticker != null;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return true if the wheel is running and has not been restarted since the given generation
+     */
+    public synchronized boolean isRunning(long generation) {
+        return ticker != null && this.generation == generation;
+    }
+
+    /**
+     * Schedule a task, the delay is rounded up to the tick duration.
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        pending.add(new Timeout(task, ticks));
+    }
+
+    private void onTick() {
+        try {
+            transferPending();
+            Queue<Timeout> slot = slots[(int) (tick % slots.length)];
+            Iterator<Timeout> iterator = slot.iterator();
+            while (iterator.hasNext()) {
+                Timeout timeout = iterator.next();
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                    continue;
+                }
+                iterator.remove();
+                taskExecutor.execute(timeout.task);
+            }
+            tick++;
+        } catch (Exception e) {
+            log.error("[Timing Wheel Error] " + e);
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            // the current slot is processed right after the transfer, so deadline ticks count from it
+            long deadlineTick = tick + timeout.ticks - 1;
+            timeout.remainingRounds = (timeout.ticks - 1) / slots.length;
+            slots[(int) (deadlineTick % slots.length)].add(timeout);
+        }
+    }
+
+    private static class Timeout {
+        private final Runnable task;
+        private final long ticks;
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long ticks) {
+            this.task = task;
+            this.ticks = ticks;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.milesight.beaveriot.ping.probe;
+
+import com.milesight.beaveriot.ping.PingConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ICMP echo through {@link InetAddress#isReachable}.
+ * <p>
+ * The JDK only sends ICMP when the process may open raw sockets, otherwise it falls back to a TCP connection to port 7.
+ * Unprivileged deployments (e.g. containers) should prefer the TCP probe.
+ * The call is blocking, so probes run on a dedicated pool.
+ */
+@Slf4j
+@Component
+public class IcmpPingProbe implements PingProbe {
+    private static final int PROBE_THREADS = 8;
+
+    private final ExecutorService probeExecutor = Executors.newFixedThreadPool(PROBE_THREADS, r -> {
+        Thread thread = new Thread(r, "ping-icmp-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public Set<PingConstants.ProbeType> supportedTypes() {
+        return Set.of(PingConstants.ProbeType.ICMP);
+    }
+
+    @Override
+    public CompletableFuture<Long> probe(PingTarget target, int timeoutMillis) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                long startTimestamp = System.currentTimeMillis();
+                InetAddress inet = InetAddress.getByName(target.ip());
+                if (inet.isReachable(timeoutMillis)) {
+                    return System.currentTimeMillis() - startTimestamp;
+                }
+            } catch (IOException e) {
+                log.warn("[Not reachable]: " + target.ip());
+            }
+            return null;
+        }, probeExecutor);
+    }
+}
@@ -0,0 +1,200 @@
+package com.milesight.beaveriot.ping.probe;
+
+import com.milesight.beaveriot.ping.PingConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TCP connect and UDP probes multiplexed on a single selector thread.
+ * <p>
+ * TCP: the device is reachable when the connection is established or actively refused, both prove the host answered.<br/>
+ * UDP: an empty datagram is sent to the port, any reply or ICMP port unreachable marks the device as reachable.<br/>
+ * Thousands of probes can be in flight at the same time without any thread per probe.
+ * Futures are completed on the selector thread, so callers should not block in their callbacks.
+ */
+@Slf4j
+@Component
+public class NioPingProbe implements PingProbe {
+    private final Queue<InFlightProbe> registrations = new ConcurrentLinkedQueue<>();
+
+    // only accessed by the selector thread
+    private final PriorityQueue<InFlightProbe> deadlines = new PriorityQueue<>(Comparator.comparingLong(InFlightProbe::getDeadlineNanos));
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(512);
+
+    private Selector selector;
+
+    @Override
+    public Set<PingConstants.ProbeType> supportedTypes() {
+        return Set.of(PingConstants.ProbeType.TCP, PingConstants.ProbeType.UDP);
+    }
+
+    @Override
+    public CompletableFuture<Long> probe(PingTarget target, int timeoutMillis) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        if (target.port() == null) {
+            future.completeExceptionally(new IllegalArgumentException("Port is required by " + target.type() + " probe"));
+            return future;
+        }
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        long now = System.nanoTime();
+        registrations.add(new InFlightProbe(target, future, now, now + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)));
+        selector.wakeup();
+        return future;
+    }
+
+    private synchronized void ensureStarted() throws IOException {
+        if (selector != null) {
+            return;
+        }
+        selector = Selector.open();
+        Thread thread = new Thread(this::runLoop, "ping-nio-probe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                registerPending();
+                selector.select(nextSelectTimeoutMillis());
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    handle(key);
+                }
+                expire();
+            } catch (Exception e) {
+                log.error("[NIO Probe Error] " + e);
+            }
+        }
+    }
+
+    private void registerPending() {
+        InFlightProbe probe;
+        while ((probe = registrations.poll()) != null) {
+            deadlines.add(probe);
+            try {
+                InetSocketAddress address = new InetSocketAddress(probe.target.ip(), probe.target.port());
+                if (probe.target.type() == PingConstants.ProbeType.TCP) {
+                    SocketChannel channel = SocketChannel.open();
+                    probe.channel = channel;
+                    channel.configureBlocking(false);
+                    if (channel.connect(address)) {
+                        complete(probe, true);
+                    } else {
+                        channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                    }
+                } else {
+                    DatagramChannel channel = DatagramChannel.open();
+                    probe.channel = channel;
+                    channel.configureBlocking(false);
+                    channel.connect(address);
+                    channel.write(ByteBuffer.allocate(0));
+                    channel.register(selector, SelectionKey.OP_READ, probe);
+                }
+            } catch (ConnectException | PortUnreachableException e) {
+                complete(probe, true);
+            } catch (IOException | RuntimeException e) {
+                complete(probe, false);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        InFlightProbe probe = (InFlightProbe) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                complete(probe, ((SocketChannel) key.channel()).finishConnect());
+            } else if (key.isReadable()) {
+                readBuffer.clear();
+                ((DatagramChannel) key.channel()).read(readBuffer);
+                complete(probe, true);
+            }
+        } catch (ConnectException | PortUnreachableException e) {
+            // refused connections and ICMP port unreachable both prove the host is up
+            complete(probe, true);
+        } catch (IOException e) {
+            complete(probe, false);
+        }
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        while (!deadlines.isEmpty() && deadlines.peek().deadlineNanos - now <= 0) {
+            InFlightProbe probe = deadlines.poll();
+            if (!probe.future.isDone()) {
+                complete(probe, false);
+            }
+        }
+    }
+
+    private long nextSelectTimeoutMillis() {
+        InFlightProbe next = deadlines.peek();
+        if (next == null) {
+            // block until the next registration wakes the selector up
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.deadlineNanos - System.nanoTime()));
+    }
+
+    private void complete(InFlightProbe probe, boolean reachable) {
+        close(probe.channel);
+        probe.future.complete(reachable ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - probe.startNanos) : null);
+    }
+
+    private static void close(SelectableChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Close channel failed: " + e);
+        }
+    }
+
+    private static class InFlightProbe {
+        private final PingTarget target;
+        private final CompletableFuture<Long> future;
+        private final long startNanos;
+        private final long deadlineNanos;
+        private SelectableChannel channel;
+
+        private InFlightProbe(PingTarget target, CompletableFuture<Long> future, long startNanos, long deadlineNanos) {
+            this.target = target;
+            this.future = future;
+            this.startNanos = startNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+}
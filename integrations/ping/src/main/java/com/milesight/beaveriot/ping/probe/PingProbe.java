@@ -0,0 +1,19 @@
+package com.milesight.beaveriot.ping.probe;
+
+import com.milesight.beaveriot.ping.PingConstants;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reachability probe strategy.
+ */
+public interface PingProbe {
+
+    Set<PingConstants.ProbeType> supportedTypes();
+
+    /**
+     * @return a future of the round trip delay in milliseconds, completed with null if the target is not reachable
+     */
+    CompletableFuture<Long> probe(PingTarget target, int timeoutMillis);
+}
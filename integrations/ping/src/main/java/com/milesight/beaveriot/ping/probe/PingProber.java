@@ -0,0 +1,35 @@
+package com.milesight.beaveriot.ping.probe;
+
+import com.milesight.beaveriot.ping.PingConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dispatches probes to the {@link PingProbe} registered for the target's probe type.
+ * Failed probes are reported as unreachable.
+ */
+@Component
+public class PingProber {
+    public static final int PROBE_TIMEOUT_MILLIS = 2000;
+
+    private final Map<PingConstants.ProbeType, PingProbe> typeToProbe = new EnumMap<>(PingConstants.ProbeType.class);
+
+    @Autowired
+    public PingProber(List<PingProbe> probes) {
+        probes.forEach(probe -> probe.supportedTypes().forEach(type -> typeToProbe.put(type, probe)));
+    }
+
+    public CompletableFuture<Long> probe(PingTarget target) {
+        PingProbe probe = typeToProbe.get(target.type());
+        if (probe == null || target.ip() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return probe.probe(target, PROBE_TIMEOUT_MILLIS)
+                .exceptionally(e -> null);
+    }
+}
@@ -0,0 +1,32 @@
+package com.milesight.beaveriot.ping.probe;
+
+import com.milesight.beaveriot.ping.PingConstants;
+
+import java.util.Map;
+
+/**
+ * Probe target of a device, read from the device additional data.
+ */
+public record PingTarget(String ip, PingConstants.ProbeType type, Integer port) {
+
+    public static PingTarget fromAdditional(Map<String, Object> additional) {
+        String ip = (String) additional.get(PingConstants.AdditionalDataName.IP);
+        PingConstants.ProbeType type = PingConstants.ProbeType.ICMP;
+        Object probeType = additional.get(PingConstants.AdditionalDataName.PROBE_TYPE);
+        if (probeType != null) {
+            // devices saved before the type was validated fall back to ICMP
+            PingConstants.ProbeType parsed = PingConstants.ProbeType.parse(probeType.toString());
+            if (parsed != null) {
+                type = parsed;
+            }
+        }
+        Integer port = null;
+        Object portValue = additional.get(PingConstants.AdditionalDataName.PORT);
+        if (portValue instanceof Number number) {
+            port = number.intValue();
+        } else if (portValue != null) {
+            port = Integer.parseInt(portValue.toString());
+        }
+        return new PingTarget(ip, type, port);
+    }
+}
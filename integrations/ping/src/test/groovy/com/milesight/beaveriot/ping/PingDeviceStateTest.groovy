@@ -0,0 +1,87 @@
+package com.milesight.beaveriot.ping
+
+import com.milesight.beaveriot.ping.probe.PingTarget
+import spock.lang.Specification
+
+class PingDeviceStateTest extends Specification {
+
+    static final long BASE_INTERVAL_MILLIS = 60_000
+
+    static final long MIN_INTERVAL_MILLIS = PingConstants.MIN_PROBE_INTERVAL_SECONDS * 1000
+
+    def state = new PingDeviceState(new PingTarget("192.168.1.1", PingConstants.ProbeType.ICMP, null),
+            new PingKeyIndex.DeviceKeys("ping.device.192_168_1_1.status", "ping.device.192_168_1_1.delay"),
+            BASE_INTERVAL_MILLIS)
+
+    def "given first probe when calling update then should report and tighten the interval"() {
+        when:
+        def report = state.update(10L, BASE_INTERVAL_MILLIS)
+
+        then:
+        report
+        state.status == PingConstants.DeviceStatus.ONLINE
+        state.delay == 10L
+        state.intervalMillis == MIN_INTERVAL_MILLIS
+    }
+
+    def "given stable online device when calling update then should double the interval up to the base period"() {
+        given:
+        state.update(10L, BASE_INTERVAL_MILLIS)
+
+        when:
+        def intervals = (1..5).collect {
+            assert !state.update(10L, BASE_INTERVAL_MILLIS)
+            state.intervalMillis
+        }
+
+        then:
+        intervals == [10_000L, 20_000L, 40_000L, BASE_INTERVAL_MILLIS, BASE_INTERVAL_MILLIS]
+    }
+
+    def "given device going offline when calling update then should report and back off up to the offline limit"() {
+        given:
+        state.update(10L, BASE_INTERVAL_MILLIS)
+        5.times { state.update(10L, BASE_INTERVAL_MILLIS) }
+
+        when:
+        def report = state.update(null, BASE_INTERVAL_MILLIS)
+
+        then:
+        report
+        state.status == PingConstants.DeviceStatus.OFFLINE
+        state.delay == null
+        state.intervalMillis == MIN_INTERVAL_MILLIS
+
+        when:
+        10.times { state.update(null, BASE_INTERVAL_MILLIS) }
+
+        then:
+        state.intervalMillis == BASE_INTERVAL_MILLIS * PingConstants.MAX_OFFLINE_BACKOFF_FACTOR
+    }
+
+    def "given online device when delay changes then should only report significant changes"() {
+        given:
+        state.update(100L, BASE_INTERVAL_MILLIS)
+
+        expect:
+        !state.update(110L, BASE_INTERVAL_MILLIS)
+        // 30ms is not half of 100ms
+        !state.update(130L, BASE_INTERVAL_MILLIS)
+        state.update(160L, BASE_INTERVAL_MILLIS)
+        state.delay == 160L
+    }
+
+    def "given probe type names when calling parse then should ignore case and reject unknown names"() {
+        expect:
+        PingConstants.ProbeType.parse(name) == type
+
+        where:
+        name    | type
+        "ICMP"  | PingConstants.ProbeType.ICMP
+        "tcp"   | PingConstants.ProbeType.TCP
+        " Udp " | PingConstants.ProbeType.UDP
+        "http"  | null
+        null    | null
+    }
+
+}
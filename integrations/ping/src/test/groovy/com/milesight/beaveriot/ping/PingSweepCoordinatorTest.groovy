@@ -0,0 +1,85 @@
+package com.milesight.beaveriot.ping
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class PingSweepCoordinatorTest extends Specification {
+
+    def coordinator = new PingSweepCoordinator()
+
+    def "given running sweep when calling trigger then should join it instead of starting another one"() {
+        given:
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def runs = 0
+        def first = CompletableFuture.supplyAsync {
+            coordinator.trigger { sweep ->
+                runs++
+                started.countDown()
+                release.await(2, TimeUnit.SECONDS)
+                new PingSweepCoordinator.SweepResult(3, 2, 1, false)
+            }.join()
+        }
+        started.await(2, TimeUnit.SECONDS)
+
+        when:
+        def joined = coordinator.trigger { sweep -> runs++; null }
+        release.countDown()
+
+        then:
+        joined.get(2, TimeUnit.SECONDS) == new PingSweepCoordinator.SweepResult(3, 2, 1, false)
+        first.get(2, TimeUnit.SECONDS).is(joined.get())
+        runs == 1
+        !coordinator.isRunning()
+    }
+
+    def "given running sweep when calling cancel then should signal the sweep"() {
+        given:
+        PingSweepCoordinator.Sweep captured = null
+        def started = new CountDownLatch(1)
+        def result = CompletableFuture.supplyAsync {
+            coordinator.trigger { sweep ->
+                captured = sweep
+                started.countDown()
+                sweep.cancelSignal.get(2, TimeUnit.SECONDS)
+                new PingSweepCoordinator.SweepResult(0, 0, 0, sweep.isCancelled())
+            }.join()
+        }
+        started.await(2, TimeUnit.SECONDS)
+
+        when:
+        def cancelled = coordinator.cancel()
+
+        then:
+        cancelled
+        result.get(2, TimeUnit.SECONDS).cancelled()
+        captured.isCancelled()
+        !coordinator.cancel()
+    }
+
+    def "given failing sweep when calling trigger then should complete exceptionally and go back to idle"() {
+        when:
+        def result = coordinator.trigger { sweep -> throw new IllegalStateException("boom") }
+
+        then:
+        result.isCompletedExceptionally()
+        !coordinator.isRunning()
+    }
+
+    def "given sweep of twenty items when calling itemCompleted then should report every ten percent"() {
+        given:
+        def sweep = new PingSweepCoordinator.Sweep()
+        sweep.start(20)
+
+        when:
+        def progress = (1..20).collect { sweep.itemCompleted() }.findAll { it >= 0 }
+
+        then:
+        progress == [10, 20, 30, 40, 50, 60, 70, 80, 90, 100]
+        sweep.getProgress() == 100
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.milesight.beaveriot.ping
+
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+
+class TimingWheelTest extends Specification {
+
+    def fired = new CopyOnWriteArrayList<String>()
+
+    def wheel = new TimingWheel(10, 8, { it.run() } as Executor)
+
+    def cleanup() {
+        wheel.stop()
+    }
+
+    def "given scheduled tasks when wheel is running then should run them in order of delay"() {
+        given:
+        wheel.start()
+        def startNanos = System.nanoTime()
+        def elapsedMillis = [:]
+
+        when:
+        wheel.schedule({ fired << "late"; elapsedMillis.late = (System.nanoTime() - startNanos) / 1_000_000 }, 200)
+        wheel.schedule({ fired << "early" }, 20)
+        wheel.schedule({ fired << "middle" }, 50)
+
+        then:
+        new PollingConditions(timeout: 2).eventually {
+            assert fired == ["early", "middle", "late"]
+        }
+        // 200ms is more than two rounds of the wheel (80ms each)
+        elapsedMillis.late >= 150
+    }
+
+    def "given scheduled tasks when wheel is restarted then should drop them"() {
+        given:
+        wheel.start()
+        def generation = wheel.getGeneration()
+        wheel.schedule({ fired << "before stop" }, 100)
+
+        when:
+        wheel.stop()
+        wheel.start()
+        wheel.schedule({ fired << "after restart" }, 20)
+
+        then:
+        !wheel.isRunning(generation)
+        wheel.isRunning(wheel.getGeneration())
+        new PollingConditions(timeout: 2).eventually {
+            assert fired == ["after restart"]
+        }
+
+        when:
+        sleep(200)
+
+        then:
+        fired == ["after restart"]
+    }
+
+    def "given stopped wheel when calling isRunning then should be false"() {
+        when:
+        wheel.start()
+        def generation = wheel.getGeneration()
+        wheel.stop()
+
+        then:
+        !wheel.isRunning()
+        !wheel.isRunning(generation)
+    }
+
+}
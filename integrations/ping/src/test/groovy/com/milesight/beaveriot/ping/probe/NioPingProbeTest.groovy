@@ -0,0 +1,52 @@
+package com.milesight.beaveriot.ping.probe
+
+import com.milesight.beaveriot.ping.PingConstants
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class NioPingProbeTest extends Specification {
+
+    def probe = new NioPingProbe()
+
+    def "given listening port when probing with tcp then should be reachable"() {
+        given:
+        def server = new ServerSocket(0, 1, InetAddress.loopbackAddress)
+
+        when:
+        def delay = probe.probe(new PingTarget("127.0.0.1", PingConstants.ProbeType.TCP, server.localPort), 1000)
+                .get(2, TimeUnit.SECONDS)
+
+        then:
+        delay != null
+        delay >= 0
+
+        cleanup:
+        server.close()
+    }
+
+    def "given closed port when probing with tcp then should be reachable because the host refused"() {
+        given:
+        def server = new ServerSocket(0, 1, InetAddress.loopbackAddress)
+        def port = server.localPort
+        server.close()
+
+        when:
+        def delay = probe.probe(new PingTarget("127.0.0.1", PingConstants.ProbeType.TCP, port), 1000)
+                .get(2, TimeUnit.SECONDS)
+
+        then:
+        delay != null
+    }
+
+    def "given target without port when probing then should fail"() {
+        when:
+        probe.probe(new PingTarget("127.0.0.1", PingConstants.ProbeType.UDP, null), 1000).get(2, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof IllegalArgumentException
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.milesight.beaveriot.simulator.msc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Endpoints of the MSC OpenAPI used by MscClient.
+ * <p>
+ * Bodies are built as json trees with the OpenAPI field names, so the application's naming strategy doesn't apply.
+ */
+@Slf4j
+@RestController
+@ConditionalOnProperty(prefix = "msc-simulator", name = "enabled", havingValue = "true")
+@RequestMapping("/public/msc-simulator")
+public class MscSimulatorController {
+
+    private static final String DEVICE_API = "/device/openapi/v1/devices";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SimulatedFleet fleet;
+
+    private final SimulatorGate gate;
+
+    private final SimulatorStats stats;
+
+    private final WebhookTrafficDriver webhookTrafficDriver;
+
+    public MscSimulatorController(SimulatedFleet fleet, SimulatorGate gate, SimulatorStats stats, WebhookTrafficDriver webhookTrafficDriver) {
+        this.fleet = fleet;
+        this.gate = gate;
+        this.stats = stats;
+        this.webhookTrafficDriver = webhookTrafficDriver;
+    }
+
+    @PostMapping("/oauth/token")
+    public ObjectNode token() {
+        gate.enter("token");
+        val token = UUID.randomUUID().toString();
+        val body = success(objectMapper.createObjectNode()
+                .put("access_token", token)
+                .put("token_type", "Bearer")
+                .put("expires_in", 3600));
+        // some clients read the token from the root object
+        body.put("access_token", token)
+                .put("token_type", "Bearer")
+                .put("expires_in", 3600);
+        return body;
+    }
+
+    @PostMapping(DEVICE_API + "/search")
+    public ObjectNode searchDetails(@RequestBody JsonNode request) {
+        gate.enter("search_details");
+        val pageNumber = Math.max(1, request.path("pageNumber").asLong(1));
+        val pageSize = Math.max(1, request.path("pageSize").asLong(10));
+        val data = objectMapper.createObjectNode()
+                .put("pageNumber", pageNumber)
+                .put("pageSize", pageSize);
+        val content = data.putArray("content");
+        val sn = request.path("sn").asText(null);
+        if (sn != null) {
+            val device = fleet.findBySn(sn);
+            data.put("total", device == null ? 0 : 1);
+            if (device != null) {
+                content.add(fleet.deviceDetails(device));
+            }
+        } else {
+            data.put("total", fleet.devices().size());
+            fleet.page(pageNumber, pageSize).forEach(device -> content.add(fleet.deviceDetails(device)));
+        }
+        return success(data);
+    }
+
+    @GetMapping(DEVICE_API + "/{deviceId}/thing-specification")
+    public ObjectNode getThingSpecification(@PathVariable("deviceId") long deviceId) {
+        gate.enter("get_thing_specification");
+        return success(fleet.thingSpec(requireDevice(deviceId)));
+    }
+
+    @GetMapping(DEVICE_API + "/{deviceId}/properties/history")
+    public ObjectNode getPropertiesHistory(@PathVariable("deviceId") long deviceId,
+                                           @RequestParam("startTime") long startTime,
+                                           @RequestParam("endTime") long endTime,
+                                           @RequestParam(value = "pageSize", defaultValue = "100") int pageSize,
+                                           @RequestParam(value = "pageKey", required = false) String pageKey) {
+        gate.enter("get_properties_history");
+        val device = requireDevice(deviceId);
+        val before = pageKey == null || pageKey.isEmpty() ? null : Long.parseLong(pageKey);
+        // fetch one more record to know whether there is a next page
+        val timestamps = fleet.recordTimestamps(startTime, endTime, before, pageSize + 1);
+        val data = objectMapper.createObjectNode();
+        val list = data.putArray("list");
+        timestamps.stream().limit(pageSize).forEach(ts -> list.addObject()
+                .put("ts", ts)
+                .set("properties", fleet.propertyValues(device, ts)));
+        if (timestamps.size() > pageSize) {
+            data.put("nextPageKey", String.valueOf(timestamps.get(pageSize - 1)));
+        }
+        stats.add("history_records", Math.min(timestamps.size(), pageSize));
+        return success(data);
+    }
+
+    @RequestMapping(value = DEVICE_API + "/{deviceId}/properties", method = {RequestMethod.POST, RequestMethod.PUT})
+    public ObjectNode updateProperties(@PathVariable("deviceId") long deviceId, @RequestBody JsonNode request) {
+        gate.enter("update_properties");
+        requireDevice(deviceId);
+        return success(objectMapper.createObjectNode());
+    }
+
+    @PostMapping(DEVICE_API + "/{deviceId}/services/call")
+    public ObjectNode callService(@PathVariable("deviceId") long deviceId, @RequestBody JsonNode request) {
+        gate.enter("call_service");
+        requireDevice(deviceId);
+        return success(objectMapper.createObjectNode());
+    }
+
+    @PostMapping(DEVICE_API)
+    public ObjectNode attach(@RequestBody JsonNode request) {
+        gate.enter("attach");
+        val sn = request.path("snDevEUI").asText(null);
+        if (sn == null || sn.isEmpty()) {
+            throw new SimulatorGate.SimulatedFailure(HttpStatus.BAD_REQUEST, "parameter_validation_failed", "snDevEUI is required");
+        }
+        val device = fleet.add(sn, request.path("name").asText(sn), fleet.defaultModel());
+        return success(objectMapper.createObjectNode().put("deviceId", device.deviceId()));
+    }
+
+    @DeleteMapping(DEVICE_API + "/{deviceId}")
+    public ObjectNode delete(@PathVariable("deviceId") long deviceId) {
+        gate.enter("delete");
+        if (!fleet.remove(deviceId)) {
+            throw new SimulatorGate.SimulatedFailure(HttpStatus.NOT_FOUND, "device_not_found", "Device not found");
+        }
+        return success(objectMapper.createObjectNode());
+    }
+
+    @PostMapping("/control/webhook-traffic/start")
+    public Map<String, Object> startWebhookTraffic(@RequestParam("rps") int rps,
+                                                   @RequestParam(value = "durationSeconds", defaultValue = "60") int durationSeconds) {
+        webhookTrafficDriver.start(rps, durationSeconds);
+        return stats.snapshot();
+    }
+
+    @PostMapping("/control/webhook-traffic/stop")
+    public Map<String, Object> stopWebhookTraffic() {
+        webhookTrafficDriver.stop();
+        return stats.snapshot();
+    }
+
+    @GetMapping("/control/stats")
+    public Map<String, Object> getStats() {
+        return stats.snapshot();
+    }
+
+    @PostMapping("/control/stats/reset")
+    public Map<String, Object> resetStats() {
+        stats.reset();
+        return stats.snapshot();
+    }
+
+    @ExceptionHandler(SimulatorGate.SimulatedFailure.class)
+    public ResponseEntity<ObjectNode> onFailure(SimulatorGate.SimulatedFailure e) {
+        return ResponseEntity.status(e.getStatus()).body(objectMapper.createObjectNode()
+                .put("status", "Failed")
+                .put("requestId", UUID.randomUUID().toString())
+                .put("errCode", e.getErrCode())
+                .put("errMsg", e.getMessage()));
+    }
+
+    private SimulatedFleet.SimulatedDevice requireDevice(long deviceId) {
+        val device = fleet.findById(deviceId);
+        if (device == null) {
+            throw new SimulatorGate.SimulatedFailure(HttpStatus.NOT_FOUND, "device_not_found", "Device not found");
+        }
+        return device;
+    }
+
+    private ObjectNode success(JsonNode data) {
+        val body = objectMapper.createObjectNode()
+                .put("status", "Success")
+                .put("requestId", UUID.randomUUID().toString());
+        body.set("data", data);
+        return body;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.milesight.beaveriot.simulator.msc;
+
+import lombok.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConditionalOnProperty(prefix = "msc-simulator", name = "enabled", havingValue = "true")
+@ConfigurationProperties(prefix = "msc-simulator")
+public class MscSimulatorProperties {
+
+    private boolean enabled;
+
+    /**
+     * Number of synthetic devices
+     */
+    private int deviceCount = 1000;
+
+    /**
+     * Seed of the synthetic fleet, the same seed always produces the same devices
+     */
+    private long seed = 42;
+
+    private List<Model> models = new ArrayList<>(List.of(
+            new Model("EM300-TH", 4, 3),
+            new Model("WS101", 2, 1),
+            new Model("UC300", 40, 8)));
+
+    /**
+     * Property history records generated per device and day
+     */
+    private int historyRecordsPerDay = 144;
+
+    private Latency latency = new Latency();
+
+    /**
+     * Max requests per second over all endpoints, 0 means unlimited
+     */
+    private int rateLimit = 0;
+
+    /**
+     * Fraction of requests answered with a server error
+     */
+    private double errorRate = 0;
+
+    private Webhook webhook = new Webhook();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Model {
+
+        private String name;
+
+        /**
+         * Number of root properties, every fourth one is a struct with two children
+         */
+        private int propertyCount;
+
+        private int eventCount;
+
+    }
+
+    @Data
+    public static class Latency {
+
+        private long minMs = 5;
+
+        private long maxMs = 50;
+
+        /**
+         * Fraction of requests delayed by spike-ms on top of the normal latency
+         */
+        private double spikeRate = 0.01;
+
+        private long spikeMs = 1000;
+
+    }
+
+    @Data
+    public static class Webhook {
+
+        private String targetUrl = "http://localhost:9200/public/integration/msc/webhook";
+
+        private String secretKey;
+
+        private String uuid = "msc-simulator";
+
+        /**
+         * Events per request body
+         */
+        private int batchSize = 1;
+
+        private int senderThreads = 8;
+
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.milesight.beaveriot.simulator.msc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthetic devices, thing specifications and property values.
+ * <p>
+ * Values are derived from the device id and the timestamp, so history pages are reproducible without storing them.
+ */
+@Component
+@ConditionalOnProperty(prefix = "msc-simulator", name = "enabled", havingValue = "true")
+public class SimulatedFleet {
+
+    private static final long FIRST_DEVICE_ID = 1_000_000L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MscSimulatorProperties properties;
+
+    private final Map<Long, SimulatedDevice> idToDevice = new ConcurrentSkipListMap<>();
+
+    private final Map<String, SimulatedDevice> snToDevice = new ConcurrentHashMap<>();
+
+    private final Map<String, ObjectNode> modelToThingSpec = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextDeviceId = new AtomicLong(FIRST_DEVICE_ID);
+
+    public SimulatedFleet(MscSimulatorProperties properties) {
+        this.properties = properties;
+        properties.getModels().forEach(model -> modelToThingSpec.put(model.getName(), buildThingSpec(model)));
+        val random = new SplittableRandom(properties.getSeed());
+        for (int i = 0; i < properties.getDeviceCount(); i++) {
+            val model = properties.getModels().get(random.nextInt(properties.getModels().size()));
+            add(String.format("SIM%09d", i), "Simulated " + model.getName() + " " + i, model.getName());
+        }
+    }
+
+    public SimulatedDevice add(String sn, String name, String model) {
+        return snToDevice.computeIfAbsent(sn, k -> {
+            val device = new SimulatedDevice(nextDeviceId.getAndIncrement(), sn, name, model);
+            idToDevice.put(device.deviceId(), device);
+            return device;
+        });
+    }
+
+    public boolean remove(long deviceId) {
+        val device = idToDevice.remove(deviceId);
+        if (device == null) {
+            return false;
+        }
+        snToDevice.remove(device.sn());
+        return true;
+    }
+
+    public SimulatedDevice findById(long deviceId) {
+        return idToDevice.get(deviceId);
+    }
+
+    public SimulatedDevice findBySn(String sn) {
+        return snToDevice.get(sn);
+    }
+
+    public Collection<SimulatedDevice> devices() {
+        return idToDevice.values();
+    }
+
+    public List<SimulatedDevice> page(long pageNumber, long pageSize) {
+        return idToDevice.values().stream()
+                .skip(Math.max(0, (pageNumber - 1) * pageSize))
+                .limit(pageSize)
+                .toList();
+    }
+
+    public String defaultModel() {
+        return properties.getModels().get(0).getName();
+    }
+
+    public ObjectNode thingSpec(SimulatedDevice device) {
+        return modelToThingSpec.get(device.model());
+    }
+
+    /**
+     * Interval between two history records of a device
+     */
+    public long recordIntervalMillis() {
+        return 86_400_000L / Math.max(1, properties.getHistoryRecordsPerDay());
+    }
+
+    public ObjectNode propertyValues(SimulatedDevice device, long timestamp) {
+        val random = new SplittableRandom(device.deviceId() * 31 + timestamp);
+        val model = properties.getModels().stream()
+                .filter(m -> m.getName().equals(device.model()))
+                .findFirst()
+                .orElseThrow();
+        val values = objectMapper.createObjectNode();
+        for (int i = 0; i < model.getPropertyCount(); i++) {
+            val id = "prop_" + i;
+            if (i % 4 == 0) {
+                values.putObject(id)
+                        .put("value", Math.round(random.nextDouble(-20, 60) * 100) / 100d)
+                        .put("status", String.valueOf(random.nextInt(2)));
+            } else if (i % 2 == 0) {
+                values.put(id, random.nextInt(0, 1000));
+            } else {
+                values.put(id, Math.round(random.nextDouble(0, 100) * 100) / 100d);
+            }
+        }
+        return values;
+    }
+
+    public ObjectNode eventValues(SimulatedDevice device, long timestamp) {
+        return objectMapper.createObjectNode()
+                .put("level", new SplittableRandom(device.deviceId() * 17 + timestamp).nextInt(0, 5));
+    }
+
+    public ObjectNode deviceDetails(SimulatedDevice device) {
+        return objectMapper.createObjectNode()
+                .put("deviceId", device.deviceId())
+                .put("sn", device.sn())
+                .put("devEUI", devEui(device.sn()))
+                .put("name", device.name())
+                .put("model", device.model())
+                .put("communicationMethod", "LoRaWAN");
+    }
+
+    /**
+     * 16 characters, the last 12 characters of the SN left-padded with zeros, SNs of attached devices may be shorter
+     */
+    static String devEui(String sn) {
+        val suffix = sn.length() > 12 ? sn.substring(sn.length() - 12) : sn;
+        return "24E1" + "0".repeat(12 - suffix.length()) + suffix;
+    }
+
+    private ObjectNode buildThingSpec(MscSimulatorProperties.Model model) {
+        val thingSpec = objectMapper.createObjectNode();
+        val propertySpecs = thingSpec.putArray("properties");
+        for (int i = 0; i < model.getPropertyCount(); i++) {
+            val id = "prop_" + i;
+            if (i % 4 == 0) {
+                addPropertySpec(propertySpecs, id, null, "STRUCT");
+                addPropertySpec(propertySpecs, id + ".value", id, "DOUBLE")
+                        .put("unitName", "°C");
+                addPropertySpec(propertySpecs, id + ".status", id, "ENUM")
+                        .set("mappings", objectMapper.createArrayNode()
+                                .add(objectMapper.createObjectNode().put("key", "0").put("value", "normal"))
+                                .add(objectMapper.createObjectNode().put("key", "1").put("value", "alarm")));
+            } else {
+                addPropertySpec(propertySpecs, id, null, i % 2 == 0 ? "INT" : "DOUBLE");
+            }
+        }
+        val eventSpecs = thingSpec.putArray("events");
+        for (int i = 0; i < model.getEventCount(); i++) {
+            val id = "event_" + i;
+            val eventSpec = eventSpecs.addObject()
+                    .put("id", id)
+                    .put("name", "Event " + i);
+            eventSpec.putArray("outputs").addObject()
+                    .put("id", id + ".level")
+                    .put("name", "Level")
+                    .putObject("dataSpec")
+                    .put("parentId", id)
+                    .put("dataType", "INT");
+        }
+        thingSpec.putArray("services").addObject()
+                .put("id", "reboot")
+                .put("name", "Reboot");
+        return thingSpec;
+    }
+
+    private static ObjectNode addPropertySpec(ArrayNode specs, String id, String parentId, String dataType) {
+        val dataSpec = specs.addObject()
+                .put("id", id)
+                .put("name", "Property " + id)
+                .put("accessMode", "RW")
+                .putObject("dataSpec")
+                .put("dataType", dataType);
+        if (parentId != null) {
+            dataSpec.put("parentId", parentId);
+        }
+        return dataSpec;
+    }
+
+    public List<Long> recordTimestamps(long startTime, long endTime, Long before, int limit) {
+        val interval = recordIntervalMillis();
+        var ts = (Math.min(endTime, before == null ? endTime : before - 1) / interval) * interval;
+        val result = new ArrayList<Long>(limit);
+        while (ts >= startTime && result.size() < limit) {
+            result.add(ts);
+            ts -= interval;
+        }
+        return result;
+    }
+
+    public record SimulatedDevice(long deviceId, String sn, String name, String model) {
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.milesight.beaveriot.simulator.msc;
+
+import lombok.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies latency, rate limit and error injection to every simulated OpenAPI request.
+ */
+@Component
+@ConditionalOnProperty(prefix = "msc-simulator", name = "enabled", havingValue = "true")
+public class SimulatorGate {
+
+    private final MscSimulatorProperties properties;
+
+    private final SimulatorStats stats;
+
+    private final AtomicLong windowSecond = new AtomicLong();
+
+    private final AtomicInteger windowCount = new AtomicInteger();
+
+    public SimulatorGate(MscSimulatorProperties properties, SimulatorStats stats) {
+        this.properties = properties;
+        this.stats = stats;
+    }
+
+    @SneakyThrows
+    public void enter(String endpoint) {
+        stats.increment("requests." + endpoint);
+        if (isRateLimited()) {
+            stats.increment("throttled." + endpoint);
+            throw new SimulatedFailure(HttpStatus.TOO_MANY_REQUESTS, "rate_limit_exceeded", "Too many requests");
+        }
+        val random = ThreadLocalRandom.current();
+        val latency = properties.getLatency();
+        var delay = latency.getMaxMs() > latency.getMinMs()
+                ? random.nextLong(latency.getMinMs(), latency.getMaxMs())
+                : latency.getMinMs();
+        if (random.nextDouble() < latency.getSpikeRate()) {
+            delay += latency.getSpikeMs();
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        if (random.nextDouble() < properties.getErrorRate()) {
+            stats.increment("errors." + endpoint);
+            throw new SimulatedFailure(HttpStatus.INTERNAL_SERVER_ERROR, "server_error", "Injected error");
+        }
+    }
+
+    private boolean isRateLimited() {
+        val limit = properties.getRateLimit();
+        if (limit <= 0) {
+            return false;
+        }
+        val second = System.currentTimeMillis() / 1000;
+        val current = windowSecond.get();
+        if (current != second && windowSecond.compareAndSet(current, second)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() > limit;
+    }
+
+    @Getter
+    public static class SimulatedFailure extends RuntimeException {
+
+        private final HttpStatus status;
+
+        private final String errCode;
+
+        public SimulatedFailure(HttpStatus status, String errCode, String message) {
+            super(message);
+            this.status = status;
+            this.errCode = errCode;
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.milesight.beaveriot.simulator.msc;
+
+import lombok.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters of the simulator, reported by the control endpoint.
+ */
+@Component
+@ConditionalOnProperty(prefix = "msc-simulator", name = "enabled", havingValue = "true")
+public class SimulatorStats {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private volatile long startedAt = System.currentTimeMillis();
+
+    public void increment(String name) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    public void add(String name, long value) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(value);
+    }
+
+    public long get(String name) {
+        val counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        val result = new TreeMap<String, Object>();
+        val elapsedMillis = Math.max(1, System.currentTimeMillis() - startedAt);
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        result.put("elapsed_ms", elapsedMillis);
+        return result;
+    }
+
+    public void reset() {
+        counters.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.milesight.beaveriot.simulator.msc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.milesight.msc.sdk.utils.HMacUtils;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends signed device_data webhook requests to the integration at a target rate.
+ * <p>
+ * Requests which can't be sent in time (all senders busy) are counted as skipped instead of queued,
+ * so the reported rate is the one the integration really sustained.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "msc-simulator", name = "enabled", havingValue = "true")
+public class WebhookTrafficDriver {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final MscSimulatorProperties properties;
+
+    private final SimulatedFleet fleet;
+
+    private final SimulatorStats stats;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private ExecutorService senders;
+
+    private ScheduledFuture<?> ticker;
+
+    public WebhookTrafficDriver(MscSimulatorProperties properties, SimulatedFleet fleet, SimulatorStats stats) {
+        this.properties = properties;
+        this.fleet = fleet;
+        this.stats = stats;
+    }
+
+    public synchronized void start(int rps, int durationSeconds) {
+        stop();
+        val threads = Math.max(1, properties.getWebhook().getSenderThreads());
+        val devices = new ArrayList<>(fleet.devices());
+        if (devices.isEmpty()) {
+            log.warn("No simulated devices, webhook traffic not started");
+            return;
+        }
+        val pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(threads));
+        senders = pool;
+        val requestsPerTick = rps * TICK_MILLIS / 1000d;
+        val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(durationSeconds);
+        val budget = new double[]{0};
+        ticker = scheduler.scheduleAtFixedRate(() -> {
+            if (System.currentTimeMillis() > deadline) {
+                stop();
+                return;
+            }
+            budget[0] += requestsPerTick;
+            while (budget[0] >= 1) {
+                budget[0] -= 1;
+                val device = devices.get(ThreadLocalRandom.current().nextInt(devices.size()));
+                try {
+                    pool.execute(() -> send(device));
+                } catch (Exception e) {
+                    stats.increment("webhook.skipped");
+                }
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        log.info("Webhook traffic started: {} rps for {} s", rps, durationSeconds);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+        if (senders != null) {
+            senders.shutdown();
+            senders = null;
+            log.info("Webhook traffic stopped");
+        }
+    }
+
+    private void send(SimulatedFleet.SimulatedDevice device) {
+        val webhook = properties.getWebhook();
+        val now = System.currentTimeMillis();
+        val body = objectMapper.createArrayNode();
+        for (int i = 0; i < Math.max(1, webhook.getBatchSize()); i++) {
+            val event = body.addObject()
+                    .put("eventId", UUID.randomUUID().toString())
+                    .put("eventCreatedTime", now / 1000)
+                    .put("eventVersion", "1.0")
+                    .put("eventType", "device_data");
+            val data = event.putObject("data");
+            data.set("deviceProfile", fleet.deviceDetails(device));
+            data.put("type", "PROPERTY");
+            data.set("payload", fleet.propertyValues(device, now));
+        }
+        val timestamp = String.valueOf(now / 1000);
+        val nonce = UUID.randomUUID().toString().replace("-", "");
+        val requestBuilder = HttpRequest.newBuilder(URI.create(webhook.getTargetUrl()))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .header("x-msc-webhook-uuid", webhook.getUuid())
+                .header("x-msc-request-timestamp", timestamp)
+                .header("x-msc-request-nonce", nonce)
+                .header("x-msc-request-signature", webhook.getSecretKey() == null || webhook.getSecretKey().isEmpty()
+                        ? ""
+                        : HMacUtils.digestHex(HMacUtils.getMac(webhook.getSecretKey()), timestamp + nonce))
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        val startNanos = System.nanoTime();
+        try {
+            val response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.discarding());
+            stats.increment(response.statusCode() < 300 ? "webhook.succeeded" : "webhook.failed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.increment("webhook.failed");
+        } catch (Exception e) {
+            log.debug("Send webhook failed", e);
+            stats.increment("webhook.failed");
+        } finally {
+            stats.increment("webhook.sent");
+            stats.add("webhook.events", Math.max(1, webhook.getBatchSize()));
+            stats.add("webhook.latency_ms_total", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+}